@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.t2labs.smileywatchface.render.CounterText;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter text formatting: the reusable char[] buffer against the string concatenation onDraw
+ * used to do for every frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CounterTextBenchmark {
+
+    private final CounterText mTapText = new CounterText("TAP: ");
+    private int mValue;
+
+    @Benchmark
+    public int counterText() {
+        mTapText.setValue(mValue++);
+        return mTapText.length();
+    }
+
+    @Benchmark
+    public int stringConcatenation() {
+        String text = "TAP: " + String.valueOf(mValue++);
+        return text.length();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.t2labs.smileywatchface.render.ClockModel;
+import org.t2labs.smileywatchface.render.FaceRenderer;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame logic of onDraw without any drawing: hand angles from the {@link ClockModel} (against
+ * the {@link Calendar} field recomputation it replaced) and picking the background frame from the
+ * eye roll state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FrameLogicBenchmark {
+
+    private FaceRenderer mRenderer;
+    private Calendar mCalendar;
+    private long mTimeMs;
+    private long mUptimeMs;
+
+    @Setup
+    public void setUp() {
+        mRenderer = new FaceRenderer();
+        mRenderer.setSurfaceSize(320, 320);
+        mCalendar = Calendar.getInstance();
+        mTimeMs = System.currentTimeMillis();
+    }
+
+    /** Clock fields and hand angles from epoch millis, once per frame. */
+    @Benchmark
+    public float handAngles() {
+        mTimeMs += 1000;
+        mRenderer.setTime(mTimeMs);
+        return mRenderer.getHoursRotation() + mRenderer.getMinutesRotation()
+                + mRenderer.getSecondsRotation();
+    }
+
+    /** Baseline: the Calendar field recomputation onDraw used to do for the same angles. */
+    @Benchmark
+    public float handAnglesFromCalendar() {
+        mTimeMs += 1000;
+        mCalendar.setTimeInMillis(mTimeMs);
+        float seconds = mCalendar.get(Calendar.SECOND)
+                + mCalendar.get(Calendar.MILLISECOND) / 1000f;
+        float minutes = mCalendar.get(Calendar.MINUTE);
+        return mCalendar.get(Calendar.HOUR) * 30 + minutes / 2f + minutes * 6f + seconds * 6f;
+    }
+
+    /** Background selection while the eyes keep rolling, at 60 frames per second. */
+    @Benchmark
+    public int backgroundFrameDuringEyeRoll() {
+        mUptimeMs += 16;
+        if (!mRenderer.getEyeRoll().isRunning(mUptimeMs)) {
+            mRenderer.getEyeRoll().start(mUptimeMs);
+        }
+        return mRenderer.getBackground(mUptimeMs);
+    }
+
+    /** Background selection on the idle face. */
+    @Benchmark
+    public int backgroundFrameIdle() {
+        mUptimeMs += 1000;
+        return mRenderer.getBackground(mUptimeMs);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.t2labs.smileywatchface.render.FaceRenderer;
+import org.t2labs.smileywatchface.render.headless.BufferedImageSurface;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full frames rendered by the render core onto the headless {@link BufferedImageSurface}: the
+ * background blit, counters and hands, in interactive and ambient mode, with the face from the
+ * smiley frames or procedural (face base plus pupils).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FullFrameBenchmark {
+
+    @Param({"280", "320", "400"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean ambient;
+
+    @Param({"false", "true"})
+    public boolean procedural;
+
+    private FaceRenderer mRenderer;
+    private BufferedImageSurface mSurface;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() throws IOException {
+        File drawables = new File(System.getProperty("smiley.drawables",
+                "../wear/src/main/res/drawable"));
+        BufferedImage[] frames = procedural
+                ? new BufferedImage[] {BufferedImageSurface.drawProceduralFace(size)}
+                : BufferedImageSurface.loadFrames(drawables, FaceRenderer.FRAME_COUNT);
+        mSurface = new BufferedImageSurface(size, size, frames, 25f);
+        mSurface.setAmbient(ambient);
+        mRenderer = new FaceRenderer();
+        mRenderer.setSurfaceSize(size, size);
+        mRenderer.setTextLayout(25f, 84f, 20f);
+        mRenderer.setAmbient(ambient);
+        mRenderer.setFaceMode(procedural ? FaceRenderer.FACE_PROCEDURAL : FaceRenderer.FACE_FRAMES);
+        mRenderer.setCounters(12, 3);
+        mTimeMs = System.currentTimeMillis();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSurface.dispose();
+    }
+
+    @Benchmark
+    public BufferedImageSurface renderFrame() {
+        mTimeMs += 1000;
+        mRenderer.drawFrame(mSurface, mTimeMs, mTimeMs);
+        return mSurface;
+    }
+}
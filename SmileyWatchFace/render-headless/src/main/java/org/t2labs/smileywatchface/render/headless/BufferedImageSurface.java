@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render.headless;
+
+import org.t2labs.smileywatchface.render.AmbientFilters;
+import org.t2labs.smileywatchface.render.DrawingSurface;
+import org.t2labs.smileywatchface.render.ProceduralSmiley;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Headless {@link DrawingSurface} rendering into a {@link BufferedImage}, for golden image tests
+ * and profiling the render core on a JVM. Mirrors the watch's default (non palette) hand style;
+ * hand shadows are not drawn. The ambient versions of the frames are derived up front with
+ * {@link AmbientFilters}, like the watch does in the background. For the procedural face, pass
+ * {@link #drawProceduralFace} as the only frame.
+ */
+public class BufferedImageSurface implements DrawingSurface {
+
+    private static final float HOUR_STROKE_WIDTH = 5f;
+    private static final float MINUTE_STROKE_WIDTH = 3f;
+    private static final float SECOND_TICK_STROKE_WIDTH = 2f;
+
+    private static final Color HAND_COLOR = Color.WHITE;
+    private static final Color HAND_HIGHLIGHT_COLOR = Color.BLUE;
+    private static final Color TEXT_COLOR = Color.RED;
+
+    private final BufferedImage mImage;
+    private final Graphics2D mGraphics;
+    /* Indexed by variant, then frame. */
+    private final BufferedImage[][] mFrames;
+
+    private final BasicStroke[] mHandStrokes = {
+            new BasicStroke(HOUR_STROKE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
+            new BasicStroke(MINUTE_STROKE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
+            new BasicStroke(SECOND_TICK_STROKE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND)
+    };
+    private final BasicStroke mCircleStroke = new BasicStroke(SECOND_TICK_STROKE_WIDTH);
+    private final BasicStroke mPupilStroke;
+    /* Indexed by variant. */
+    private final Color[] mPupilColors = new Color[VARIANT_COUNT];
+    private final Line2D.Float mLine = new Line2D.Float();
+    private final Ellipse2D.Float mCircle = new Ellipse2D.Float();
+    private final AffineTransform mIdentity = new AffineTransform();
+    /* The pixel shift, applied to everything but the black fill of the background. */
+    private final AffineTransform mShift = new AffineTransform();
+
+    private boolean mAmbient;
+
+    /**
+     * @param frames background frames at any size; they are scaled to the surface width once,
+     *               keeping their aspect ratio, like the watch does
+     */
+    public BufferedImageSurface(int width, int height, BufferedImage[] frames, float textSize) {
+        mImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        mGraphics = mImage.createGraphics();
+        mGraphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.round(textSize)));
+        mFrames = new BufferedImage[VARIANT_COUNT][frames.length];
+        mPupilStroke = new BasicStroke(
+                ProceduralSmiley.PUPIL_OUTLINE_WIDTH * width / ProceduralSmiley.REFERENCE_SIZE);
+        for (int variant = 0; variant < VARIANT_COUNT; variant++) {
+            mPupilColors[variant] = new Color(ProceduralSmiley.pupilColor(variant), true);
+        }
+        for (int i = 0; i < frames.length; i++) {
+            BufferedImage color = scaleToWidth(frames[i], width);
+            mFrames[VARIANT_COLOR][i] = color;
+            mFrames[VARIANT_GRAY][i] = derive(color, VARIANT_GRAY);
+            mFrames[VARIANT_LOW_BIT][i] = derive(color, VARIANT_LOW_BIT);
+            mFrames[VARIANT_BURN_IN][i] = derive(color, VARIANT_BURN_IN);
+        }
+        setAmbient(false);
+    }
+
+    /** Loads smiley1.png .. smileyN.png from a drawable directory. */
+    public static BufferedImage[] loadFrames(File directory, int count) throws IOException {
+        BufferedImage[] frames = new BufferedImage[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = ImageIO.read(new File(directory, "smiley" + (i + 1) + ".png"));
+            if (frames[i] == null) {
+                throw new IOException("Could not read frame " + (i + 1) + " in " + directory);
+            }
+        }
+        return frames;
+    }
+
+    /** Draws the procedural face base (no pupils) at {@code width} square. */
+    public static BufferedImage drawProceduralFace(int width) {
+        BufferedImage image = new BufferedImage(width, width, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.scale(width / ProceduralSmiley.REFERENCE_SIZE,
+                width / ProceduralSmiley.REFERENCE_SIZE);
+        Color ink = new Color(ProceduralSmiley.INK_COLOR, true);
+
+        float center = ProceduralSmiley.FACE_CENTER;
+        float radius = ProceduralSmiley.FACE_RADIUS;
+        Ellipse2D.Float face = new Ellipse2D.Float(center - radius, center - radius,
+                radius * 2, radius * 2);
+        graphics.setColor(new Color(ProceduralSmiley.FACE_COLOR, true));
+        graphics.fill(face);
+        graphics.setColor(ink);
+        graphics.setStroke(new BasicStroke(ProceduralSmiley.FACE_OUTLINE_WIDTH));
+        graphics.draw(face);
+
+        graphics.setStroke(new BasicStroke(ProceduralSmiley.EYE_OUTLINE_WIDTH));
+        float[] eyeCenters = {ProceduralSmiley.EYE_LEFT_X, ProceduralSmiley.EYE_RIGHT_X};
+        for (float eyeX : eyeCenters) {
+            Ellipse2D.Float eye = new Ellipse2D.Float(
+                    eyeX - ProceduralSmiley.EYE_RADIUS_X,
+                    ProceduralSmiley.EYE_Y - ProceduralSmiley.EYE_RADIUS_Y,
+                    ProceduralSmiley.EYE_RADIUS_X * 2, ProceduralSmiley.EYE_RADIUS_Y * 2);
+            graphics.setColor(new Color(ProceduralSmiley.EYE_COLOR, true));
+            graphics.fill(eye);
+            graphics.setColor(ink);
+            graphics.draw(eye);
+        }
+
+        /* Java2D angles run counter-clockwise. */
+        float smileRadius = ProceduralSmiley.SMILE_RADIUS;
+        graphics.setStroke(new BasicStroke(ProceduralSmiley.SMILE_WIDTH, BasicStroke.CAP_ROUND,
+                BasicStroke.JOIN_ROUND));
+        graphics.draw(new Arc2D.Float(center - smileRadius,
+                ProceduralSmiley.SMILE_CENTER_Y - smileRadius, smileRadius * 2, smileRadius * 2,
+                -ProceduralSmiley.SMILE_START_ANGLE, -ProceduralSmiley.SMILE_SWEEP_ANGLE,
+                Arc2D.OPEN));
+        float size = ProceduralSmiley.REFERENCE_SIZE;
+        graphics.draw(new Line2D.Float(ProceduralSmiley.DIMPLE_OUTER_X,
+                ProceduralSmiley.DIMPLE_OUTER_Y, ProceduralSmiley.DIMPLE_INNER_X,
+                ProceduralSmiley.DIMPLE_INNER_Y));
+        graphics.draw(new Line2D.Float(size - ProceduralSmiley.DIMPLE_OUTER_X,
+                ProceduralSmiley.DIMPLE_OUTER_Y, size - ProceduralSmiley.DIMPLE_INNER_X,
+                ProceduralSmiley.DIMPLE_INNER_Y));
+        graphics.dispose();
+        return image;
+    }
+
+    public BufferedImage getImage() {
+        return mImage;
+    }
+
+    /** Ambient style: solid white hands without anti-aliasing. */
+    public void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+        Object antiAlias = ambient
+                ? RenderingHints.VALUE_ANTIALIAS_OFF : RenderingHints.VALUE_ANTIALIAS_ON;
+        mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antiAlias);
+        mGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, ambient
+                ? RenderingHints.VALUE_TEXT_ANTIALIAS_OFF : RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
+    /**
+     * Moves everything drawn from now on by a pixel shift ({@code PixelShift}), like the watch
+     * does in ambient mode with burn-in protection.
+     */
+    public void setPixelShift(int x, int y) {
+        mShift.setToTranslation(x, y);
+    }
+
+    @Override
+    public void drawBackground(int frame, int variant) {
+        BufferedImage image = null;
+        if (frame >= 0 && frame < mFrames[variant].length) {
+            image = mFrames[variant][frame];
+        }
+        mGraphics.setTransform(mIdentity);
+        mGraphics.setColor(Color.BLACK);
+        mGraphics.fillRect(0, 0, mImage.getWidth(), mImage.getHeight());
+        if (image != null) {
+            mGraphics.setTransform(mShift);
+            mGraphics.drawImage(image, 0, 0, null);
+        }
+    }
+
+    @Override
+    public void drawPupil(float centerX, float centerY, float radiusX, float radiusY,
+            int variant) {
+        mGraphics.setTransform(mShift);
+        mGraphics.setColor(mPupilColors[variant]);
+        mCircle.setFrame(centerX - radiusX, centerY - radiusY, radiusX * 2, radiusY * 2);
+        if (ProceduralSmiley.isPupilOutlined(variant)) {
+            mGraphics.setStroke(mPupilStroke);
+            mGraphics.draw(mCircle);
+        } else {
+            mGraphics.fill(mCircle);
+        }
+    }
+
+    @Override
+    public void drawCounterText(char[] text, int length, float x, float y) {
+        mGraphics.setTransform(mShift);
+        mGraphics.setColor(TEXT_COLOR);
+        mGraphics.drawChars(text, 0, length, Math.round(x), Math.round(y));
+    }
+
+    @Override
+    public void drawHand(int hand, float degrees, float centerX, float centerY,
+            float innerRadius, float outerRadius) {
+        mGraphics.setTransform(mShift);
+        mGraphics.rotate(Math.toRadians(degrees), centerX, centerY);
+        mGraphics.setStroke(mHandStrokes[hand]);
+        mGraphics.setColor(mAmbient || hand != HAND_SECOND ? HAND_COLOR : HAND_HIGHLIGHT_COLOR);
+        mLine.setLine(centerX, centerY - innerRadius, centerX, centerY - outerRadius);
+        mGraphics.draw(mLine);
+    }
+
+    @Override
+    public void drawCenterCircle(float centerX, float centerY, float radius) {
+        mGraphics.setTransform(mShift);
+        mGraphics.setStroke(mCircleStroke);
+        mGraphics.setColor(HAND_COLOR);
+        mCircle.setFrame(centerX - radius, centerY - radius, radius * 2, radius * 2);
+        mGraphics.draw(mCircle);
+    }
+
+    public void dispose() {
+        mGraphics.dispose();
+    }
+
+    private static BufferedImage scaleToWidth(BufferedImage source, int width) {
+        int height = Math.round(source.getHeight() * (width / (float) source.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private static BufferedImage derive(BufferedImage source, int variant) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.getRGB(0, 0, width, height, null, 0, width);
+        int[] derived = new int[pixels.length];
+        AmbientFilters.derive(variant, pixels, width, height, derived);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, derived, 0, width);
+        return image;
+    }
+}
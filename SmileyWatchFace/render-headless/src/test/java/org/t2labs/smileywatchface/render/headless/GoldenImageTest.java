@@ -0,0 +1,232 @@
+package org.t2labs.smileywatchface.render.headless;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.t2labs.smileywatchface.render.FaceRenderer;
+import org.t2labs.smileywatchface.render.PixelShift;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders known states of the face with the headless backend and diffs them against the golden
+ * images in src/test/resources/golden. Run with {@code -Pgolden.update} to rewrite the goldens
+ * after an intended visual change.
+ *
+ * <p>The counter text is masked out of the comparison since font rasterization differs between
+ * JDKs; everything else must match within a small per-channel tolerance.
+ */
+public class GoldenImageTest {
+
+    private static final int SIZE = 320;
+    private static final float TEXT_SIZE = 25f;
+    private static final float TEXT_X = 25f;
+    private static final float TEXT_Y = 84f;
+    private static final float TEXT_SPACING = 20f;
+
+    /* Largest per-channel difference that still counts as the same pixel. */
+    private static final int CHANNEL_TOLERANCE = 8;
+    /* Fraction of compared pixels allowed to differ (anti-aliasing differences). */
+    private static final double MAX_MISMATCH_FRACTION = 0.001;
+
+    private FaceRenderer mRenderer;
+    private BufferedImageSurface mSurface;
+    private Calendar mCalendar;
+
+    @Before
+    public void setUp() throws IOException {
+        File drawables = new File(System.getProperty("smiley.drawables",
+                "../wear/src/main/res/drawable"));
+        mSurface = new BufferedImageSurface(SIZE, SIZE,
+                BufferedImageSurface.loadFrames(drawables, FaceRenderer.FRAME_COUNT), TEXT_SIZE);
+        mRenderer = new FaceRenderer();
+        mRenderer.setSurfaceSize(SIZE, SIZE);
+        mRenderer.setTextLayout(TEXT_X, TEXT_Y, TEXT_SPACING);
+        mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        mRenderer.getClock().setTimeZone(mCalendar.getTimeZone());
+    }
+
+    @After
+    public void tearDown() {
+        mSurface.dispose();
+    }
+
+    @Test
+    public void interactive() throws IOException {
+        mRenderer.setCounters(3, 1);
+        setTime(10, 10, 30);
+        mRenderer.drawFrame(mSurface, 0, mCalendar.getTimeInMillis());
+        assertMatchesGolden("interactive_10_10_30");
+    }
+
+    @Test
+    public void eyeRoll() throws IOException {
+        mRenderer.getEyeRoll().start(0);
+        setTime(2, 47, 5);
+        mRenderer.drawFrame(mSurface, 2 * FaceRenderer.EYE_ROLL_FRAME_MS + 10,
+                mCalendar.getTimeInMillis());
+        assertMatchesGolden("eye_roll_frame_3");
+    }
+
+    @Test
+    public void ambientGray() throws IOException {
+        mRenderer.setAmbient(true);
+        mSurface.setAmbient(true);
+        setTime(4, 45, 0);
+        mRenderer.drawFrame(mSurface, 0, mCalendar.getTimeInMillis());
+        assertMatchesGolden("ambient_gray_04_45");
+    }
+
+    @Test
+    public void ambientLowBit() throws IOException {
+        mRenderer.setAmbient(true);
+        mRenderer.setLowBitAmbient(true);
+        mSurface.setAmbient(true);
+        setTime(9, 5, 0);
+        mRenderer.drawFrame(mSurface, 0, mCalendar.getTimeInMillis());
+        assertMatchesGolden("ambient_low_bit_09_05");
+    }
+
+    @Test
+    public void ambientBurnIn() throws IOException {
+        mRenderer.setAmbient(true);
+        mRenderer.setBurnInProtection(true);
+        mSurface.setAmbient(true);
+        setTime(7, 30, 0);
+        mRenderer.drawFrame(mSurface, 0, mCalendar.getTimeInMillis());
+        assertMatchesGolden("ambient_burn_in_07_30");
+    }
+
+    @Test
+    public void pixelShiftLeavesNoStalePixels() {
+        int maxOffset = 3;
+        long periodMs = 60000;
+        PixelShift shift = new PixelShift(maxOffset, periodMs);
+        /* Third step of the cycle, down and to the right. */
+        shift.setTime(2 * periodMs);
+        assertEquals(maxOffset, shift.getX());
+        assertEquals(maxOffset, shift.getY());
+
+        /* Whatever the last frame left on the surface. */
+        Graphics2D graphics = mSurface.getImage().createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, SIZE, SIZE);
+        graphics.dispose();
+
+        mRenderer.setAmbient(true);
+        mRenderer.setBurnInProtection(true);
+        mSurface.setAmbient(true);
+        mSurface.setPixelShift(shift.getX(), shift.getY());
+        setTime(7, 30, 0);
+        mRenderer.drawFrame(mSurface, 0, mCalendar.getTimeInMillis());
+
+        BufferedImage image = mSurface.getImage();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (x < shift.getX() || y < shift.getY()) {
+                    assertEquals("Stale pixel at " + x + "," + y, Color.BLACK.getRGB(),
+                            image.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void proceduralEyeRoll() throws IOException {
+        useProceduralFace();
+        mRenderer.getEyeRoll().start(0);
+        setTime(2, 47, 5);
+        /* Halfway through the second keyframe: looking down, like smiley3. */
+        mRenderer.drawFrame(mSurface, FaceRenderer.EYE_ROLL_FRAME_MS * 3 / 2,
+                mCalendar.getTimeInMillis());
+        assertMatchesGolden("procedural_eye_roll_1_5");
+    }
+
+    @Test
+    public void proceduralAmbientBurnIn() throws IOException {
+        useProceduralFace();
+        mRenderer.setAmbient(true);
+        mRenderer.setBurnInProtection(true);
+        mSurface.setAmbient(true);
+        setTime(7, 30, 0);
+        mRenderer.drawFrame(mSurface, 0, mCalendar.getTimeInMillis());
+        assertMatchesGolden("procedural_ambient_burn_in_07_30");
+    }
+
+    /** Renders an hour of one-second frames, as a smoke test of the render loop off-device. */
+    @Test
+    public void rendersAnHourOfFrames() {
+        setTime(0, 0, 0);
+        long start = mCalendar.getTimeInMillis();
+        for (int second = 0; second < 3600; second++) {
+            mRenderer.drawFrame(mSurface, second * 1000L, start + second * 1000L);
+        }
+    }
+
+    private void useProceduralFace() {
+        mSurface.dispose();
+        mSurface = new BufferedImageSurface(SIZE, SIZE,
+                new BufferedImage[] {BufferedImageSurface.drawProceduralFace(SIZE)}, TEXT_SIZE);
+        mRenderer.setFaceMode(FaceRenderer.FACE_PROCEDURAL);
+    }
+
+    private void setTime(int hour, int minute, int second) {
+        mCalendar.clear();
+        mCalendar.set(2015, Calendar.OCTOBER, 4, hour, minute, second);
+    }
+
+    private void assertMatchesGolden(String name) throws IOException {
+        BufferedImage actual = mSurface.getImage();
+        File goldenDir = new File(System.getProperty("golden.dir", "src/test/resources/golden"));
+        File golden = new File(goldenDir, name + ".png");
+        if (Boolean.getBoolean("golden.update")) {
+            assertTrue(goldenDir.isDirectory() || goldenDir.mkdirs());
+            ImageIO.write(actual, "png", golden);
+            return;
+        }
+        BufferedImage expected = ImageIO.read(golden);
+        assertNotNull("Missing golden image " + golden, expected);
+        assertTrue("Size differs from " + golden, expected.getWidth() == actual.getWidth()
+                && expected.getHeight() == actual.getHeight());
+
+        int textTop = Math.round(TEXT_Y - TEXT_SIZE);
+        int textBottom = Math.round(TEXT_Y + TEXT_SPACING + TEXT_SIZE / 2);
+        int compared = 0;
+        int mismatched = 0;
+        for (int y = 0; y < actual.getHeight(); y++) {
+            if (y >= textTop && y <= textBottom) {
+                continue;
+            }
+            for (int x = 0; x < actual.getWidth(); x++) {
+                compared++;
+                if (!samePixel(expected.getRGB(x, y), actual.getRGB(x, y))) {
+                    mismatched++;
+                }
+            }
+        }
+        assertTrue(name + ": " + mismatched + " of " + compared + " pixels differ",
+                mismatched <= compared * MAX_MISMATCH_FRACTION);
+    }
+
+    private static boolean samePixel(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int difference = ((expected >> shift) & 0xff) - ((actual >> shift) & 0xff);
+            if (Math.abs(difference) > CHANNEL_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
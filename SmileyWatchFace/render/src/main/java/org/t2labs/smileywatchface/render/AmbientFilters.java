@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Derives the ambient versions of a face frame from its ARGB pixels: grayscale, 1-bit dithered
+ * for low-bit ambient screens and a sparse outline for screens needing burn-in protection.
+ * Pure pixel arithmetic, safe to run on any thread. Pixels are only read at or after the one
+ * being written, so {@code src} and {@code dst} may be the same array.
+ */
+public final class AmbientFilters {
+
+    private static final int BLACK = 0xff000000;
+    private static final int WHITE = 0xffffffff;
+
+    /* 4x4 ordered dither thresholds, scaled to 0..255. */
+    private static final int[] BAYER_4X4 = {
+            8, 136, 40, 168,
+            200, 72, 232, 104,
+            56, 184, 24, 152,
+            248, 120, 216, 88
+    };
+
+    /* Luminance step between neighbours that counts as an edge. */
+    private static final int EDGE_THRESHOLD = 48;
+
+    private AmbientFilters() {
+    }
+
+    /**
+     * Derives the {@code DrawingSurface.VARIANT_*} version {@code variant} of a color frame into
+     * {@code dst}.
+     */
+    public static void derive(int variant, int[] src, int width, int height, int[] dst) {
+        switch (variant) {
+            case DrawingSurface.VARIANT_GRAY:
+                grayscale(src, dst);
+                break;
+            case DrawingSurface.VARIANT_LOW_BIT:
+                ditherLowBit(src, width, height, dst);
+                break;
+            case DrawingSurface.VARIANT_BURN_IN:
+                outline(src, width, height, dst);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a derived variant: " + variant);
+        }
+    }
+
+    /** Same luminance weights as {@code ColorMatrix.setSaturation(0)}; alpha is kept. */
+    public static void grayscale(int[] src, int[] dst) {
+        for (int i = 0; i < src.length; i++) {
+            dst[i] = gray(src[i]);
+        }
+    }
+
+    /** One pixel of {@link #grayscale}. */
+    public static int gray(int argb) {
+        int l = luminance(argb);
+        return (argb & 0xff000000) | (l << 16) | (l << 8) | l;
+    }
+
+    /**
+     * Opaque black and white pixels only, with the gray levels kept by ordered dithering. An
+     * ordered pattern stays put from frame to frame, unlike error diffusion.
+     */
+    public static void ditherLowBit(int[] src, int width, int height, int[] dst) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int thresholdRow = (y & 3) << 2;
+            for (int x = 0; x < width; x++) {
+                int l = visibleLuminance(src[row + x]);
+                dst[row + x] = l > BAYER_4X4[thresholdRow + (x & 3)] ? WHITE : BLACK;
+            }
+        }
+    }
+
+    /**
+     * White edge pixels on opaque black, with every other edge pixel dropped in a checkerboard so
+     * that no pixel stays lit next to a lit neighbour for long.
+     */
+    public static void outline(int[] src, int width, int height, int[] dst) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int i = row + x;
+                boolean edge = false;
+                if (((x + y) & 1) == 0) {
+                    int l = visibleLuminance(src[i]);
+                    edge = (x + 1 < width
+                            && Math.abs(l - visibleLuminance(src[i + 1])) > EDGE_THRESHOLD)
+                            || (y + 1 < height
+                            && Math.abs(l - visibleLuminance(src[i + width])) > EDGE_THRESHOLD);
+                }
+                dst[i] = edge ? WHITE : BLACK;
+            }
+        }
+    }
+
+    /**
+     * Packs the brightness of each pixel over black into one alpha byte, for ALPHA_8 masks: an
+     * ambient frame drawn as a white mask looks the same as the ARGB frame. Rows of {@code dst}
+     * are {@code rowBytes} apart, the mask bitmap's row stride.
+     */
+    public static void alphaMask(int[] src, int width, int height, int rowBytes, byte[] dst) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int dstRow = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                dst[dstRow + x] = (byte) visibleLuminance(src[row + x]);
+            }
+        }
+    }
+
+    /**
+     * Counts the lit pixels, those not black over black, among {@code count} pixels of
+     * {@code pixels} from {@code offset}, e.g. one row of a frame at a time.
+     */
+    public static int countLit(int[] pixels, int offset, int count) {
+        int lit = 0;
+        for (int i = offset; i < offset + count; i++) {
+            if (visibleLuminance(pixels[i]) > 0) {
+                lit++;
+            }
+        }
+        return lit;
+    }
+
+    private static int luminance(int argb) {
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        return Math.min(255, Math.round(0.213f * r + 0.715f * g + 0.072f * b));
+    }
+
+    /* Luminance of the pixel composited over black. */
+    private static int visibleLuminance(int argb) {
+        return luminance(argb) * (argb >>> 24) / 255;
+    }
+}
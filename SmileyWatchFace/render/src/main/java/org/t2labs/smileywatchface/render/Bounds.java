@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Axis aligned bounding box in surface pixels, grown point by point. Used to find the parts of
+ * the face that change between two frames, so a backend can redraw only those.
+ */
+public final class Bounds {
+
+    public float left;
+    public float top;
+    public float right;
+    public float bottom;
+
+    public Bounds() {
+        setEmpty();
+    }
+
+    public void setEmpty() {
+        left = Float.POSITIVE_INFINITY;
+        top = Float.POSITIVE_INFINITY;
+        right = Float.NEGATIVE_INFINITY;
+        bottom = Float.NEGATIVE_INFINITY;
+    }
+
+    public boolean isEmpty() {
+        return left > right || top > bottom;
+    }
+
+    public void set(Bounds bounds) {
+        left = bounds.left;
+        top = bounds.top;
+        right = bounds.right;
+        bottom = bounds.bottom;
+    }
+
+    /** Grows the box to include the point. */
+    public void union(float x, float y) {
+        left = Math.min(left, x);
+        top = Math.min(top, y);
+        right = Math.max(right, x);
+        bottom = Math.max(bottom, y);
+    }
+
+    /** Grows the box to include {@code bounds}; an empty box adds nothing. */
+    public void union(Bounds bounds) {
+        if (!bounds.isEmpty()) {
+            union(bounds.left, bounds.top);
+            union(bounds.right, bounds.bottom);
+        }
+    }
+
+    /** Grows the box by {@code margin} on every side, e.g. for stroke widths and shadows. */
+    public void outset(float margin) {
+        if (!isEmpty()) {
+            left -= margin;
+            top -= margin;
+            right += margin;
+            bottom += margin;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "Bounds[empty]" : "Bounds[" + left + ", " + top + " - " + right + ", "
+                + bottom + "]";
+    }
+}
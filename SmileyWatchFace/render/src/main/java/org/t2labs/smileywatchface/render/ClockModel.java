@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+import java.util.TimeZone;
+
+/**
+ * Wall clock fields (12 hour, minute, second, millisecond) computed from epoch milliseconds with
+ * plain {@code long} arithmetic, in place of a per-frame {@link java.util.Calendar} field
+ * recomputation.
+ *
+ * <p>The zone's UTC + DST offset is cached together with the interval it is valid for. It is only
+ * looked up again when the time zone is set (time zone broadcast, face becoming visible) or the
+ * time leaves that interval, i.e. at the next DST transition. The transition is found by scanning
+ * ahead in {@link #SCAN_STEP_MS} steps and narrowing down the step it falls in by bisection.
+ * {@link #setTime(long)} allocates nothing.
+ */
+public class ClockModel {
+
+    private static final long SECOND_MS = 1000;
+    private static final long MINUTE_MS = 60 * SECOND_MS;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    /*
+     * Offset changes closer together than a scan step can be missed. Real zones are months
+     * apart; a few hours keeps the scan short while catching any transition.
+     */
+    static final long SCAN_STEP_MS = 6 * HOUR_MS;
+    /* How far ahead to look for a transition; without one, the offset is looked up again then. */
+    static final long SCAN_LIMIT_MS = 14 * DAY_MS;
+
+    private TimeZone mTimeZone;
+    private long mOffsetMs;
+    /* The cached offset applies to times in [mOffsetValidFromMs, mOffsetValidUntilMs). */
+    private long mOffsetValidFromMs;
+    private long mOffsetValidUntilMs;
+    private int mOffsetLookups;
+
+    private long mTimeMs;
+    private int mHour;
+    private int mMinute;
+    private int mSecond;
+    private int mMillisecond;
+
+    public ClockModel() {
+        this(TimeZone.getDefault());
+    }
+
+    public ClockModel(TimeZone timeZone) {
+        setTimeZone(timeZone);
+    }
+
+    /** Sets the zone and drops the cached offset. Call whenever the system zone may change. */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mOffsetValidFromMs = Long.MAX_VALUE;
+        mOffsetValidUntilMs = Long.MIN_VALUE;
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /** Updates the clock fields to {@code timeMs}, milliseconds since the epoch. */
+    public void setTime(long timeMs) {
+        if (timeMs < mOffsetValidFromMs || timeMs >= mOffsetValidUntilMs) {
+            refreshOffset(timeMs);
+        }
+        mTimeMs = timeMs;
+
+        long localMs = timeMs + mOffsetMs;
+        long millisOfDay = localMs % DAY_MS;
+        if (millisOfDay < 0) {
+            millisOfDay += DAY_MS;
+        }
+        mHour = (int) (millisOfDay / HOUR_MS) % 12;
+        mMinute = (int) (millisOfDay / MINUTE_MS % 60);
+        mSecond = (int) (millisOfDay / SECOND_MS % 60);
+        mMillisecond = (int) (millisOfDay % SECOND_MS);
+    }
+
+    public long getTime() {
+        return mTimeMs;
+    }
+
+    /** Hour of the 12 hour clock, 0-11, like {@code Calendar.HOUR}. */
+    public int getHour() {
+        return mHour;
+    }
+
+    public int getMinute() {
+        return mMinute;
+    }
+
+    public int getSecond() {
+        return mSecond;
+    }
+
+    public int getMillisecond() {
+        return mMillisecond;
+    }
+
+    /** UTC + DST offset applied to the last {@link #setTime(long)}. */
+    public long getOffsetMs() {
+        return mOffsetMs;
+    }
+
+    /** Time the cached offset stops being valid, e.g. the next DST transition. */
+    public long getOffsetValidUntilMs() {
+        return mOffsetValidUntilMs;
+    }
+
+    /** Number of times the offset was looked up in the time zone, for diagnostics. */
+    public int getOffsetLookups() {
+        return mOffsetLookups;
+    }
+
+    private void refreshOffset(long timeMs) {
+        mOffsetLookups++;
+        int offset = mTimeZone.getOffset(timeMs);
+        mOffsetMs = offset;
+        mOffsetValidFromMs = timeMs;
+        mOffsetValidUntilMs = timeMs + SCAN_LIMIT_MS;
+
+        /* Scan ahead for the first step with a different offset... */
+        long before = timeMs;
+        for (long t = timeMs + SCAN_STEP_MS; t <= timeMs + SCAN_LIMIT_MS; t += SCAN_STEP_MS) {
+            if (mTimeZone.getOffset(t) != offset) {
+                /* ...and bisect it down to the first millisecond of the new offset. */
+                long after = t;
+                while (after - before > 1) {
+                    long middle = before + (after - before) / 2;
+                    if (mTimeZone.getOffset(middle) == offset) {
+                        before = middle;
+                    } else {
+                        after = middle;
+                    }
+                }
+                mOffsetValidUntilMs = after;
+                return;
+            }
+            before = t;
+        }
+    }
+}
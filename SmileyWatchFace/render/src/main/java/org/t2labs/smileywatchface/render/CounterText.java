@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * A label followed by a counter value (e.g. "TAP: 12"), formatted into a reusable
+ * {@code char[]} for {@code Canvas.drawText(char[], int, int, float, float, Paint)}. Updating the
+ * value never allocates.
+ */
+public final class CounterText {
+
+    /* Enough for Integer.MIN_VALUE. */
+    private static final int MAX_DIGITS = 11;
+
+    private final char[] mChars;
+    private final int mPrefixLength;
+    private int mLength;
+    private int mValue;
+
+    public CounterText(String prefix) {
+        mPrefixLength = prefix.length();
+        mChars = new char[mPrefixLength + MAX_DIGITS];
+        prefix.getChars(0, mPrefixLength, mChars, 0);
+        format(0);
+    }
+
+    /** Sets the counter value; returns whether the text changed. */
+    public boolean setValue(int value) {
+        if (value == mValue) {
+            return false;
+        }
+        format(value);
+        return true;
+    }
+
+    public int getValue() {
+        return mValue;
+    }
+
+    /** Backing buffer, valid from 0 to {@link #length()}. */
+    public char[] getChars() {
+        return mChars;
+    }
+
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public String toString() {
+        return new String(mChars, 0, mLength);
+    }
+
+    private void format(int value) {
+        mValue = value;
+        long remaining = Math.abs((long) value);
+        int digits = 1;
+        for (long v = remaining; v >= 10; v /= 10) {
+            digits++;
+        }
+        int position = mPrefixLength;
+        if (value < 0) {
+            mChars[position++] = '-';
+        }
+        mLength = position + digits;
+        for (int i = mLength - 1; i >= position; i--) {
+            mChars[i] = (char) ('0' + (remaining % 10));
+            remaining /= 10;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Drawing target for {@link FaceRenderer}. Implementations map the calls onto a real canvas
+ * ({@code android.graphics.Canvas} on the watch, {@code java.awt} on the JVM) and own the paints
+ * and background images, so the render logic itself has no platform dependencies.
+ */
+public interface DrawingSurface {
+
+    int HAND_HOUR = 0;
+    int HAND_MINUTE = 1;
+    int HAND_SECOND = 2;
+
+    /** Plain black background, instead of a frame. */
+    int BACKGROUND_BLACK = -1;
+
+    /** Full color frame, for interactive mode. */
+    int VARIANT_COLOR = 0;
+    /** Grayscale frame, for ambient mode. */
+    int VARIANT_GRAY = 1;
+    /** 1-bit dithered frame, for low-bit ambient mode. */
+    int VARIANT_LOW_BIT = 2;
+    /** Sparse outline of the frame, for ambient mode with burn-in protection. */
+    int VARIANT_BURN_IN = 3;
+    int VARIANT_COUNT = 4;
+
+    /**
+     * Fills the whole surface with a version ({@code VARIANT_*}) of a background frame, 0 being
+     * the resting face and 1-4 the eye roll, or with black for {@link #BACKGROUND_BLACK}. Draws
+     * black as well while the requested version isn't available (yet).
+     */
+    void drawBackground(int frame, int variant);
+
+    /**
+     * Draws a pupil of the procedural face ({@link ProceduralSmiley}) as an ellipse, in the style
+     * of the background version {@code variant}.
+     */
+    void drawPupil(float centerX, float centerY, float radiusX, float radiusY, int variant);
+
+    /** Draws the first {@code length} chars of {@code text} with the counter text style. */
+    void drawCounterText(char[] text, int length, float x, float y);
+
+    /**
+     * Draws one hand as a line from {@code innerRadius} to {@code outerRadius} away from the
+     * center, rotated clockwise by {@code degrees} from 12 o'clock.
+     */
+    void drawHand(int hand, float degrees, float centerX, float centerY, float innerRadius,
+            float outerRadius);
+
+    /** Draws the circle the hands start from. */
+    void drawCenterCircle(float centerX, float centerY, float radius);
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+import org.t2labs.smileywatchface.render.KeyframeAnimation.Easing;
+import org.t2labs.smileywatchface.render.KeyframeAnimation.Keyframe;
+
+/**
+ * Platform independent render logic of the smiley watch face: hand angles and lengths, background
+ * frame selection (ambient variants and the eye roll) and the tap counters. All drawing goes
+ * through a {@link DrawingSurface}. Drawing a frame allocates nothing.
+ *
+ * <p>The face is either one of the five background frames, or, in {@link #FACE_PROCEDURAL}
+ * mode, a single face base (frame 0, without pupils) with the pupils drawn on top, which rolls
+ * smoothly at any frame rate.
+ */
+public class FaceRenderer {
+
+    /** Number of background frames: the resting face plus four eye roll positions. */
+    public static final int FRAME_COUNT = 5;
+
+    /** How long each eye position of the eye roll is shown. */
+    public static final long EYE_ROLL_FRAME_MS = 150;
+
+    public static final float CENTER_GAP_AND_CIRCLE_RADIUS = 4f;
+
+    /** Face modes: the smiley1..smiley5 frames, or a face base plus pupils. */
+    public static final int FACE_FRAMES = 0;
+    public static final int FACE_PROCEDURAL = 1;
+
+    /*
+     * Eye roll: frames 1-4 (smiley2..smiley5) in order, then back to frame 0. Driven by a
+     * monotonic clock so the roll takes the same time on every device.
+     */
+    private final KeyframeAnimation mEyeRoll = new KeyframeAnimation(
+            new Keyframe(1, EYE_ROLL_FRAME_MS, Easing.EASE_IN),
+            new Keyframe(2, EYE_ROLL_FRAME_MS, Easing.LINEAR),
+            new Keyframe(3, EYE_ROLL_FRAME_MS, Easing.LINEAR),
+            new Keyframe(4, EYE_ROLL_FRAME_MS, Easing.EASE_OUT));
+
+    /* Counter labels, formatted without allocating. */
+    private final CounterText mTapText = new CounterText("TAP: ");
+    private final CounterText mCancelText = new CounterText("CANCEL: ");
+
+    private final ClockModel mClock = new ClockModel();
+    private final ProceduralSmiley mSmiley = new ProceduralSmiley();
+    private int mFaceMode = FACE_FRAMES;
+    /* Eye roll frames that could not be loaded; the resting face is shown in their place. */
+    private final boolean[] mMissingFrames = new boolean[FRAME_COUNT];
+    /* Surface pixels per pixel of the face artwork. */
+    private float mFaceScale;
+    private boolean mSmoothHands;
+    private boolean mSecondHand = true;
+
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+
+    private float mCenterX;
+    private float mCenterY;
+
+    private float mSecondHandLength;
+    private float mMinuteHandLength;
+    private float mHourHandLength;
+
+    private float mTextX;
+    private float mTextY;
+    private float mTextSpacingHeight;
+
+    private float mHoursRotation;
+    private float mMinutesRotation;
+    private float mSecondsRotation;
+
+    /**
+     * Finds the center of the surface, ignoring any window insets so that, on round watches with
+     * a "chin", the face is centered on the entire screen, and sizes the hands to it.
+     */
+    public void setSurfaceSize(int width, int height) {
+        mCenterX = width / 2f;
+        mCenterY = height / 2f;
+        mFaceScale = width / ProceduralSmiley.REFERENCE_SIZE;
+
+        mSecondHandLength = (float) (mCenterX * 0.875);
+        mMinuteHandLength = (float) (mCenterX * 0.75);
+        mHourHandLength = (float) (mCenterX * 0.5);
+    }
+
+    public void setTextLayout(float x, float y, float lineSpacing) {
+        mTextX = x;
+        mTextY = y;
+        mTextSpacingHeight = lineSpacing;
+    }
+
+    public void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+    }
+
+    public boolean isAmbient() {
+        return mAmbient;
+    }
+
+    public void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+    }
+
+    public void setBurnInProtection(boolean burnInProtection) {
+        mBurnInProtection = burnInProtection;
+    }
+
+    /** {@link #FACE_FRAMES} or {@link #FACE_PROCEDURAL}. */
+    public void setFaceMode(int faceMode) {
+        mFaceMode = faceMode;
+    }
+
+    public int getFaceMode() {
+        return mFaceMode;
+    }
+
+    /**
+     * Marks background frame {@code frame} as one that could not be loaded (or as loaded again).
+     * The eye roll shows the resting face in place of a missing frame instead of black.
+     */
+    public void setFrameMissing(int frame, boolean missing) {
+        mMissingFrames[frame] = missing;
+    }
+
+    public KeyframeAnimation getEyeRoll() {
+        return mEyeRoll;
+    }
+
+    public ClockModel getClock() {
+        return mClock;
+    }
+
+    /**
+     * Sweeping hour and minute hands: when set, they move with every second instead of jumping
+     * once a minute.
+     */
+    public void setSmoothHands(boolean smoothHands) {
+        mSmoothHands = smoothHands;
+    }
+
+    /** Whether to draw the second hand in interactive mode (it is never drawn in ambient). */
+    public void setSecondHand(boolean secondHand) {
+        mSecondHand = secondHand;
+    }
+
+    /** Updates the counters; returns whether the counter text changed. */
+    public boolean setCounters(int taps, int cancels) {
+        boolean tapChanged = mTapText.setValue(taps);
+        boolean cancelChanged = mCancelText.setValue(cancels);
+        return tapChanged || cancelChanged;
+    }
+
+    /**
+     * Returns the background to show at {@code uptimeMs}: the eye roll frame (0, the resting
+     * face, when the eyes aren't rolling) in the version for the current mode, packed into one
+     * int. Interactive backgrounds are plain frame numbers. The procedural face always has the
+     * face base, frame 0; its eye roll is in {@link #drawPupils}. Missing frames
+     * ({@link #setFrameMissing}) fall back to the resting face.
+     *
+     * @see #backgroundFrame(int)
+     * @see #backgroundVariant(int)
+     */
+    public int getBackground(long uptimeMs) {
+        int frame = mFaceMode == FACE_PROCEDURAL ? 0 : Math.max(0, mEyeRoll.frameAt(uptimeMs));
+        if (mMissingFrames[frame]) {
+            frame = 0;
+        }
+        return background(frame, getBackgroundVariant());
+    }
+
+    /** Version of the backgrounds for the current mode: color when interactive. */
+    public int getBackgroundVariant() {
+        return mAmbient ? getAmbientVariant() : DrawingSurface.VARIANT_COLOR;
+    }
+
+    /**
+     * Version of the backgrounds for ambient mode on this screen: the outline with burn-in
+     * protection, 1-bit on low-bit screens, otherwise grayscale.
+     */
+    public int getAmbientVariant() {
+        if (mBurnInProtection) {
+            return DrawingSurface.VARIANT_BURN_IN;
+        }
+        return mLowBitAmbient ? DrawingSurface.VARIANT_LOW_BIT : DrawingSurface.VARIANT_GRAY;
+    }
+
+    /** Packs a frame and its version into one background value, see {@link #getBackground}. */
+    public static int background(int frame, int variant) {
+        return frame < 0 ? DrawingSurface.BACKGROUND_BLACK : frame | (variant << 8);
+    }
+
+    public static int backgroundFrame(int background) {
+        return background < 0 ? DrawingSurface.BACKGROUND_BLACK : background & 0xff;
+    }
+
+    public static int backgroundVariant(int background) {
+        return background < 0 ? DrawingSurface.VARIANT_COLOR : background >> 8;
+    }
+
+    public void drawBackground(DrawingSurface surface, int background) {
+        surface.drawBackground(backgroundFrame(background), backgroundVariant(background));
+    }
+
+    /** Draws the pupils of the procedural face for the eye roll at {@code uptimeMs}. */
+    public void drawPupils(DrawingSurface surface, long uptimeMs) {
+        if (mFaceMode != FACE_PROCEDURAL) {
+            return;
+        }
+        mSmiley.setRollPosition(mEyeRoll.positionAt(uptimeMs));
+        int variant = getBackgroundVariant();
+        float y = mSmiley.getPupilY() * mFaceScale;
+        float radiusX = mSmiley.getPupilRadiusX() * mFaceScale;
+        float radiusY = mSmiley.getPupilRadiusY() * mFaceScale;
+        surface.drawPupil(mSmiley.getLeftPupilX() * mFaceScale, y, radiusX, radiusY, variant);
+        surface.drawPupil(mSmiley.getRightPupilX() * mFaceScale, y, radiusX, radiusY, variant);
+    }
+
+    /**
+     * Adds the area the pupils of the procedural face can move in, the eyes, to {@code bounds};
+     * adds nothing for the frame faces, whose eye roll changes the whole background.
+     */
+    public void unionPupilBounds(Bounds bounds) {
+        if (mFaceMode != FACE_PROCEDURAL) {
+            return;
+        }
+        float radiusX = (ProceduralSmiley.EYE_RADIUS_X + ProceduralSmiley.EYE_OUTLINE_WIDTH)
+                * mFaceScale;
+        float radiusY = (ProceduralSmiley.EYE_RADIUS_Y + ProceduralSmiley.EYE_OUTLINE_WIDTH)
+                * mFaceScale;
+        float y = ProceduralSmiley.EYE_Y * mFaceScale;
+        bounds.union(ProceduralSmiley.EYE_LEFT_X * mFaceScale - radiusX, y - radiusY);
+        bounds.union(ProceduralSmiley.EYE_RIGHT_X * mFaceScale + radiusX, y + radiusY);
+    }
+
+    /** Counters are only shown in interactive mode. */
+    public boolean hasCounters() {
+        return !mAmbient;
+    }
+
+    public void drawCounters(DrawingSurface surface) {
+        if (!hasCounters()) {
+            return;
+        }
+        surface.drawCounterText(mTapText.getChars(), mTapText.length(), mTextX, mTextY);
+        surface.drawCounterText(mCancelText.getChars(), mCancelText.length(),
+                mTextX, mTextY + mTextSpacingHeight);
+    }
+
+    /**
+     * Computes the hand angles for {@code timeMs}, milliseconds since the epoch, in the zone of
+     * {@link #getClock()}. These calculations reflect the rotation in degrees per unit of time,
+     * e.g., 360 / 60 = 6 and 360 / 12 = 30.
+     */
+    public void setTime(long timeMs) {
+        mClock.setTime(timeMs);
+        final float seconds = mClock.getSecond() + mClock.getMillisecond() / 1000f;
+        mSecondsRotation = seconds * 6f;
+
+        final float minutes = mSmoothHands ? mClock.getMinute() + seconds / 60f
+                : mClock.getMinute();
+        mMinutesRotation = minutes * 6f;
+
+        final float hourHandOffset = minutes / 2f;
+        mHoursRotation = (mClock.getHour() * 30) + hourHandOffset;
+    }
+
+    public float getHoursRotation() {
+        return mHoursRotation;
+    }
+
+    public float getMinutesRotation() {
+        return mMinutesRotation;
+    }
+
+    public float getSecondsRotation() {
+        return mSecondsRotation;
+    }
+
+    /** Length of hand {@code hand} ({@code DrawingSurface.HAND_*}) on this surface. */
+    public float getHandLength(int hand) {
+        switch (hand) {
+            case DrawingSurface.HAND_HOUR:
+                return mHourHandLength;
+            case DrawingSurface.HAND_MINUTE:
+                return mMinuteHandLength;
+            case DrawingSurface.HAND_SECOND:
+                return mSecondHandLength;
+            default:
+                throw new IllegalArgumentException("Not a hand: " + hand);
+        }
+    }
+
+    /**
+     * Draws the hands for the last {@link #setTime} call. The second hand is only drawn in
+     * interactive mode, unless turned off; in ambient mode the face only updates once a minute.
+     */
+    public void drawHands(DrawingSurface surface) {
+        surface.drawHand(DrawingSurface.HAND_HOUR, mHoursRotation, mCenterX, mCenterY,
+                CENTER_GAP_AND_CIRCLE_RADIUS, mHourHandLength);
+        surface.drawHand(DrawingSurface.HAND_MINUTE, mMinutesRotation, mCenterX, mCenterY,
+                CENTER_GAP_AND_CIRCLE_RADIUS, mMinuteHandLength);
+        if (!mAmbient && mSecondHand) {
+            surface.drawHand(DrawingSurface.HAND_SECOND, mSecondsRotation, mCenterX, mCenterY,
+                    CENTER_GAP_AND_CIRCLE_RADIUS, mSecondHandLength);
+        }
+        surface.drawCenterCircle(mCenterX, mCenterY, CENTER_GAP_AND_CIRCLE_RADIUS);
+    }
+
+    /**
+     * Adds the hands and center circle {@link #drawHands} draws for the last {@link #setTime}
+     * call to {@code bounds}: the center lines of the hands, without their stroke width.
+     */
+    public void unionHandBounds(Bounds bounds) {
+        unionHand(bounds, mHoursRotation, mHourHandLength);
+        unionHand(bounds, mMinutesRotation, mMinuteHandLength);
+        if (!mAmbient && mSecondHand) {
+            unionHand(bounds, mSecondsRotation, mSecondHandLength);
+        }
+        bounds.union(mCenterX - CENTER_GAP_AND_CIRCLE_RADIUS,
+                mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS);
+        bounds.union(mCenterX + CENTER_GAP_AND_CIRCLE_RADIUS,
+                mCenterY + CENTER_GAP_AND_CIRCLE_RADIUS);
+    }
+
+    /* Hands point up at 0 degrees and turn clockwise, like the canvas rotation in drawHand. */
+    private void unionHand(Bounds bounds, float degrees, float length) {
+        double radians = Math.toRadians(degrees);
+        float sin = (float) Math.sin(radians);
+        float cos = (float) Math.cos(radians);
+        bounds.union(mCenterX + sin * CENTER_GAP_AND_CIRCLE_RADIUS,
+                mCenterY - cos * CENTER_GAP_AND_CIRCLE_RADIUS);
+        bounds.union(mCenterX + sin * length, mCenterY - cos * length);
+    }
+
+    /** Draws a complete frame without any layer caching (off-device rendering, benchmarks). */
+    public void drawFrame(DrawingSurface surface, long uptimeMs, long timeMs) {
+        drawBackground(surface, getBackground(uptimeMs));
+        drawCounters(surface);
+        drawPupils(surface, uptimeMs);
+        setTime(timeMs);
+        drawHands(surface);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Time based keyframe animation. The current frame is picked from the elapsed monotonic time
+ * (e.g. {@code SystemClock.uptimeMillis()}) since {@link #start(long)}, so the animation takes
+ * the same time no matter how often it is drawn. Nothing is allocated after construction.
+ */
+public class KeyframeAnimation {
+
+    /** Easing applied to the progress within a single keyframe. */
+    public enum Easing {
+        LINEAR {
+            @Override
+            public float apply(float t) {
+                return t;
+            }
+        },
+        EASE_IN {
+            @Override
+            public float apply(float t) {
+                return t * t;
+            }
+        },
+        EASE_OUT {
+            @Override
+            public float apply(float t) {
+                return 1f - (1f - t) * (1f - t);
+            }
+        },
+        EASE_IN_OUT {
+            @Override
+            public float apply(float t) {
+                return t * t * (3f - 2f * t);
+            }
+        };
+
+        public abstract float apply(float t);
+    }
+
+    /** One entry of the keyframe table: which frame to show, for how long and how to ease. */
+    public static final class Keyframe {
+        final int frame;
+        final long durationMs;
+        final Easing easing;
+
+        public Keyframe(int frame, long durationMs, Easing easing) {
+            if (durationMs <= 0) {
+                throw new IllegalArgumentException("Keyframe duration must be positive");
+            }
+            this.frame = frame;
+            this.durationMs = durationMs;
+            this.easing = easing;
+        }
+    }
+
+    /** Returned by {@link #frameAt(long)} when the animation isn't running. */
+    public static final int NO_FRAME = -1;
+
+    private final Keyframe[] mKeyframes;
+    /* End time of each keyframe, relative to the start of the animation. */
+    private final long[] mKeyframeEndMs;
+    private final long mTotalDurationMs;
+
+    private boolean mRunning;
+    private long mStartTimeMs;
+
+    public KeyframeAnimation(Keyframe... keyframes) {
+        if (keyframes.length == 0) {
+            throw new IllegalArgumentException("At least one keyframe is required");
+        }
+        mKeyframes = keyframes.clone();
+        mKeyframeEndMs = new long[keyframes.length];
+        long end = 0;
+        for (int i = 0; i < keyframes.length; i++) {
+            end += keyframes[i].durationMs;
+            mKeyframeEndMs[i] = end;
+        }
+        mTotalDurationMs = end;
+    }
+
+    public void start(long nowMs) {
+        mRunning = true;
+        mStartTimeMs = nowMs;
+    }
+
+    public void stop() {
+        mRunning = false;
+    }
+
+    public long getTotalDurationMs() {
+        return mTotalDurationMs;
+    }
+
+    /** Returns whether the animation is running at {@code nowMs}; finishes it once it ran out. */
+    public boolean isRunning(long nowMs) {
+        if (mRunning && nowMs - mStartTimeMs >= mTotalDurationMs) {
+            mRunning = false;
+        }
+        return mRunning;
+    }
+
+    /** Returns the frame to show at {@code nowMs}, or {@link #NO_FRAME} if not running. */
+    public int frameAt(long nowMs) {
+        int index = keyframeIndexAt(nowMs);
+        return index < 0 ? NO_FRAME : mKeyframes[index].frame;
+    }
+
+    /** Returns the eased progress [0, 1] within the current keyframe, or 0 if not running. */
+    public float fractionAt(long nowMs) {
+        int index = keyframeIndexAt(nowMs);
+        if (index < 0) {
+            return 0f;
+        }
+        long keyframeStart = index == 0 ? 0 : mKeyframeEndMs[index - 1];
+        float t = (nowMs - mStartTimeMs - keyframeStart) / (float) mKeyframes[index].durationMs;
+        return mKeyframes[index].easing.apply(Math.min(1f, Math.max(0f, t)));
+    }
+
+    /**
+     * Returns how far the animation got at {@code nowMs}: the index of the current keyframe plus
+     * the eased progress within it, so it runs from 0 up to the number of keyframes. Returns -1
+     * if not running.
+     */
+    public float positionAt(long nowMs) {
+        int index = keyframeIndexAt(nowMs);
+        return index < 0 ? -1f : index + fractionAt(nowMs);
+    }
+
+    /**
+     * Returns the time until the next keyframe starts (or the animation ends), which is the
+     * earliest moment the picked frame can change. Returns -1 if not running.
+     */
+    public long delayToNextKeyframeMs(long nowMs) {
+        int index = keyframeIndexAt(nowMs);
+        if (index < 0) {
+            return -1;
+        }
+        return mKeyframeEndMs[index] - (nowMs - mStartTimeMs);
+    }
+
+    private int keyframeIndexAt(long nowMs) {
+        if (!isRunning(nowMs)) {
+            return -1;
+        }
+        long elapsed = Math.max(0, nowMs - mStartTimeMs);
+        for (int i = 0; i < mKeyframeEndMs.length; i++) {
+            if (elapsed < mKeyframeEndMs[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Pixel shift for ambient mode with burn-in protection: every period the whole face moves to the
+ * next offset of a fixed cycle around its home position, so the outline doesn't keep lighting
+ * the same pixels. The offset follows the wall clock alone, so it is the same after a redraw and
+ * a backend applies it as a translate of what it already has instead of rendering anew.
+ */
+public final class PixelShift {
+
+    /* Offsets in units of the maximum shift: home, then around it clockwise. */
+    private static final int[] CYCLE_X = {0, 1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] CYCLE_Y = {0, 0, 1, 1, 1, 0, -1, -1, -1};
+
+    private final int mMaxOffset;
+    private final long mPeriodMs;
+    private int mX;
+    private int mY;
+
+    /** Moves up to {@code maxOffset} pixels on each axis, to a new offset every period. */
+    public PixelShift(int maxOffset, long periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("periodMs must be positive: " + periodMs);
+        }
+        mMaxOffset = maxOffset;
+        mPeriodMs = periodMs;
+    }
+
+    /** Moves to the offset for {@code timeMs}, milliseconds since the epoch. */
+    public void setTime(long timeMs) {
+        long period = timeMs / mPeriodMs;
+        int step = (int) (((period % CYCLE_X.length) + CYCLE_X.length) % CYCLE_X.length);
+        mX = CYCLE_X[step] * mMaxOffset;
+        mY = CYCLE_Y[step] * mMaxOffset;
+    }
+
+    public int getX() {
+        return mX;
+    }
+
+    public int getY() {
+        return mY;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Geometry of the smiley face, for drawing it with paths instead of the smiley1..smiley5 frames:
+ * a face base without pupils, drawn once per surface size, and the pupils on top of it at any
+ * position of the eye roll.
+ *
+ * <p>Coordinates are in the pixels of the original {@link #REFERENCE_SIZE} square artwork; like
+ * the frames, the face is scaled to the surface width from the top left corner. Angles are in
+ * degrees, clockwise from 3 o'clock.
+ */
+public final class ProceduralSmiley {
+
+    /** Width and height of the artwork the coordinates refer to. */
+    public static final float REFERENCE_SIZE = 549f;
+
+    public static final int FACE_COLOR = 0xfffff100;
+    public static final int EYE_COLOR = 0xffffffff;
+    /** Outlines, smile and pupils. */
+    public static final int INK_COLOR = 0xff231f20;
+
+    public static final float FACE_CENTER = REFERENCE_SIZE / 2;
+    /** To the middle of the outline. */
+    public static final float FACE_RADIUS = 271.5f;
+    public static final float FACE_OUTLINE_WIDTH = 6f;
+
+    public static final float EYE_LEFT_X = 197f;
+    public static final float EYE_RIGHT_X = 351f;
+    public static final float EYE_Y = 180.5f;
+    /** To the middle of the outline. */
+    public static final float EYE_RADIUS_X = 42.5f;
+    public static final float EYE_RADIUS_Y = 81.5f;
+    public static final float EYE_OUTLINE_WIDTH = 5.5f;
+
+    /** Arc of a circle around (FACE_CENTER, SMILE_CENTER_Y). */
+    public static final float SMILE_CENTER_Y = 243.5f;
+    public static final float SMILE_RADIUS = 215f;
+    public static final float SMILE_START_ANGLE = 19.6f;
+    public static final float SMILE_SWEEP_ANGLE = 140.8f;
+    public static final float SMILE_WIDTH = 6f;
+    /** The dimple at the left end of the smile, mirrored on the right. */
+    public static final float DIMPLE_OUTER_X = 57f;
+    public static final float DIMPLE_OUTER_Y = 317f;
+    public static final float DIMPLE_INNER_X = 87f;
+    public static final float DIMPLE_INNER_Y = 305f;
+
+    /** Resting pupil, looking straight ahead. */
+    public static final float PUPIL_RADIUS_X = 20f;
+    public static final float PUPIL_RADIUS_Y = 39f;
+    /** Width of the pupil outline in the burn-in version. */
+    public static final float PUPIL_OUTLINE_WIDTH = 3.5f;
+    /* How far the pupils move, and how much narrower they get, looking all the way sideways. */
+    private static final float PUPIL_TRAVEL_X = 22f;
+    private static final float PUPIL_TRAVEL_Y = 38f;
+    private static final float PUPIL_FORESHORTENING = 7f;
+
+    /*
+     * The eye roll looks right, down, left and up, one keyframe each, then back ahead. Halfway
+     * through each keyframe the pupils are where the matching frame (smiley2..smiley5) has them;
+     * the first half keyframe moves them there from rest, like smiley1, and the last half back.
+     */
+    private static final int ROLL_KEYFRAMES = 4;
+
+    private float mOffsetX;
+    private float mOffsetY;
+    private float mRadiusX = PUPIL_RADIUS_X;
+    private float mRadiusY = PUPIL_RADIUS_Y;
+
+    /**
+     * Places the pupils for a {@link KeyframeAnimation#positionAt position} of the eye roll:
+     * 0 to 4 while rolling, negative when resting.
+     */
+    public void setRollPosition(float position) {
+        if (position < 0 || position >= ROLL_KEYFRAMES) {
+            setLook(0f, 0f);
+        } else if (position < 0.5f) {
+            setLook(0f, position * 2);
+        } else if (position < ROLL_KEYFRAMES - 0.5f) {
+            setLook((position - 0.5f) * 90f, 1f);
+        } else {
+            setLook(270f, (ROLL_KEYFRAMES - position) * 2);
+        }
+    }
+
+    /**
+     * Looks in direction {@code angle}, from straight ahead ({@code amount} 0) to all the way
+     * ({@code amount} 1).
+     */
+    public void setLook(float angle, float amount) {
+        double radians = Math.toRadians(angle);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        mOffsetX = PUPIL_TRAVEL_X * amount * cos;
+        mOffsetY = PUPIL_TRAVEL_Y * amount * sin;
+        mRadiusX = PUPIL_RADIUS_X - PUPIL_FORESHORTENING * amount * Math.abs(cos);
+        mRadiusY = PUPIL_RADIUS_Y - PUPIL_FORESHORTENING * amount * Math.abs(sin);
+    }
+
+    /** Center of the left pupil, in reference pixels. */
+    public float getLeftPupilX() {
+        return EYE_LEFT_X + mOffsetX;
+    }
+
+    public float getRightPupilX() {
+        return EYE_RIGHT_X + mOffsetX;
+    }
+
+    public float getPupilY() {
+        return EYE_Y + mOffsetY;
+    }
+
+    public float getPupilRadiusX() {
+        return mRadiusX;
+    }
+
+    public float getPupilRadiusY() {
+        return mRadiusY;
+    }
+
+    /**
+     * Color of the pupils in a {@code DrawingSurface.VARIANT_*} of the face base, matching what
+     * {@link AmbientFilters} makes of the ink. The burn-in outline has pupils outlined in white
+     * instead, see {@link #isPupilOutlined}.
+     */
+    public static int pupilColor(int variant) {
+        switch (variant) {
+            case DrawingSurface.VARIANT_GRAY:
+                return AmbientFilters.gray(INK_COLOR);
+            case DrawingSurface.VARIANT_LOW_BIT:
+                return 0xff000000;
+            case DrawingSurface.VARIANT_BURN_IN:
+                return 0xffffffff;
+            default:
+                return INK_COLOR;
+        }
+    }
+
+    public static boolean isPupilOutlined(int variant) {
+        return variant == DrawingSurface.VARIANT_BURN_IN;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Picks how much the interactive face renders from what the watch is going through: mute mode,
+ * how much of the screen a peek card covers, the battery level and charger, power save mode and
+ * the battery temperature. Each tier fixes the update interval and whether the second hand, hand
+ * shadows and the eye roll are drawn.
+ *
+ * <p>Battery and temperature thresholds have some hysteresis so the tier doesn't flap around
+ * them. Inputs take effect on the next {@link #evaluate}.
+ */
+public final class RenderGovernor {
+
+    /** Everything: second hand, shadows, eye roll, updates every second. */
+    public static final int TIER_FULL = 0;
+    /** No hand shadows. */
+    public static final int TIER_REDUCED = 1;
+    /** No second hand, shadows or eye roll; updates once a minute. */
+    public static final int TIER_SAVER = 2;
+    public static final int TIER_COUNT = 3;
+
+    /* Why the tier isn't TIER_FULL; a bit set. */
+    public static final int REASON_MUTE = 1;
+    public static final int REASON_PEEK_CARD = 1 << 1;
+    public static final int REASON_BATTERY_LOW = 1 << 2;
+    public static final int REASON_BATTERY_CRITICAL = 1 << 3;
+    public static final int REASON_POWER_SAVE = 1 << 4;
+    public static final int REASON_HOT = 1 << 5;
+
+    /** Battery percentages at or below which the face reduces, and saves. */
+    public static final int BATTERY_LOW_PERCENT = 30;
+    public static final int BATTERY_CRITICAL_PERCENT = 15;
+    /** Percentage points the battery must climb back above a threshold to leave its tier. */
+    public static final int BATTERY_HYSTERESIS_PERCENT = 5;
+
+    /** Battery temperature, in tenths of a degree Celsius, from which the face saves. */
+    public static final int HOT_TEMPERATURE = 420;
+    public static final int TEMPERATURE_HYSTERESIS = 20;
+
+    /** Fraction of the screen a peek card must cover to reduce the face. */
+    public static final float PEEK_CARD_COVERAGE = 0.5f;
+
+    private static final long[] UPDATE_INTERVAL_MS = {1000, 1000, 60 * 1000};
+    private static final String[] TIER_NAMES = {"full", "reduced", "saver"};
+
+    private boolean mMuteMode;
+    private float mPeekCardCoverage;
+    private int mBatteryPercent = 100;
+    private boolean mCharging;
+    private boolean mPowerSaveMode;
+    private int mBatteryTemperature;
+
+    private int mTier = TIER_FULL;
+    private int mReasons;
+    private int mSwitchCount;
+    private final long[] mTierDurationMs = new long[TIER_COUNT];
+    private long mTierStartMs = -1;
+
+    public void setMuteMode(boolean muteMode) {
+        mMuteMode = muteMode;
+    }
+
+    /** Fraction of the screen covered by the peek card, 0 without one. */
+    public void setPeekCardCoverage(float coverage) {
+        mPeekCardCoverage = coverage;
+    }
+
+    public void setBattery(int percent, boolean charging) {
+        mBatteryPercent = percent;
+        mCharging = charging;
+    }
+
+    public void setPowerSaveMode(boolean powerSaveMode) {
+        mPowerSaveMode = powerSaveMode;
+    }
+
+    /** @param temperature in tenths of a degree Celsius, like {@code BatteryManager} reports */
+    public void setBatteryTemperature(int temperature) {
+        mBatteryTemperature = temperature;
+    }
+
+    /**
+     * Picks the tier for the current inputs.
+     *
+     * @param uptimeMs monotonic time, for the time spent in each tier
+     * @return whether the tier changed
+     */
+    public boolean evaluate(long uptimeMs) {
+        int reasons = 0;
+        if (mMuteMode) {
+            reasons |= REASON_MUTE;
+        }
+        if (mPeekCardCoverage >= PEEK_CARD_COVERAGE) {
+            reasons |= REASON_PEEK_CARD;
+        }
+        if (mPowerSaveMode) {
+            reasons |= REASON_POWER_SAVE;
+        }
+        int hotFrom = (mReasons & REASON_HOT) != 0
+                ? HOT_TEMPERATURE - TEMPERATURE_HYSTERESIS : HOT_TEMPERATURE;
+        if (mBatteryTemperature >= hotFrom) {
+            reasons |= REASON_HOT;
+        }
+        if (!mCharging) {
+            if (mBatteryPercent <= threshold(BATTERY_CRITICAL_PERCENT, REASON_BATTERY_CRITICAL)) {
+                reasons |= REASON_BATTERY_CRITICAL;
+            } else if (mBatteryPercent <= threshold(BATTERY_LOW_PERCENT,
+                    REASON_BATTERY_LOW | REASON_BATTERY_CRITICAL)) {
+                reasons |= REASON_BATTERY_LOW;
+            }
+        }
+
+        int tier = TIER_FULL;
+        if ((reasons & (REASON_POWER_SAVE | REASON_HOT | REASON_BATTERY_CRITICAL)) != 0) {
+            tier = TIER_SAVER;
+        } else if (reasons != 0) {
+            tier = TIER_REDUCED;
+        }
+        mReasons = reasons;
+
+        if (mTierStartMs < 0) {
+            mTierStartMs = uptimeMs;
+        }
+        if (tier == mTier) {
+            return false;
+        }
+        mTierDurationMs[mTier] += uptimeMs - mTierStartMs;
+        mTierStartMs = uptimeMs;
+        mTier = tier;
+        mSwitchCount++;
+        return true;
+    }
+
+    /* The battery threshold, raised by the hysteresis while one of the reasons is active. */
+    private int threshold(int percent, int reasons) {
+        return (mReasons & reasons) != 0 ? percent + BATTERY_HYSTERESIS_PERCENT : percent;
+    }
+
+    public int getTier() {
+        return mTier;
+    }
+
+    /** The {@code REASON_*} bits behind the current tier. */
+    public int getReasons() {
+        return mReasons;
+    }
+
+    public long getUpdateIntervalMs() {
+        return UPDATE_INTERVAL_MS[mTier];
+    }
+
+    public boolean showsSecondHand() {
+        return mTier != TIER_SAVER;
+    }
+
+    public boolean showsShadows() {
+        return mTier == TIER_FULL;
+    }
+
+    public boolean allowsAnimation() {
+        return mTier != TIER_SAVER;
+    }
+
+    public int getSwitchCount() {
+        return mSwitchCount;
+    }
+
+    /** Time spent in {@code tier} up to {@code uptimeMs}. */
+    public long getTimeInTierMs(int tier, long uptimeMs) {
+        long duration = mTierDurationMs[tier];
+        if (tier == mTier && mTierStartMs >= 0) {
+            duration += uptimeMs - mTierStartMs;
+        }
+        return duration;
+    }
+
+    public static String tierName(int tier) {
+        return TIER_NAMES[tier];
+    }
+}
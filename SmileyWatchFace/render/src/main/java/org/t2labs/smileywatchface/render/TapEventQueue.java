@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Bounded buffer that coalesces the tap events arriving between two frames, stored as primitives
+ * in ring arrays. The tap callback {@link #offer}s, the next frame drains everything queued so far
+ * in one go. Both run on the main thread, so the queue is not thread-safe; it never allocates.
+ * When full, new events are dropped and counted.
+ */
+public final class TapEventQueue {
+
+    /** Receives drained events, in the order they were offered. */
+    public interface Consumer {
+        void onTapEvent(int type, int x, int y, long eventTimeMs);
+    }
+
+    private final int mMask;
+    private final int[] mTypes;
+    private final int[] mXs;
+    private final int[] mYs;
+    private final long[] mTimes;
+
+    /* Next slot to read. */
+    private long mHead;
+    /* Next slot to write. */
+    private long mTail;
+    private long mDropped;
+
+    /** @param capacity a power of two */
+    public TapEventQueue(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mMask = capacity - 1;
+        mTypes = new int[capacity];
+        mXs = new int[capacity];
+        mYs = new int[capacity];
+        mTimes = new long[capacity];
+    }
+
+    /** Queues an event; returns false (and drops it) if the queue is full. */
+    public boolean offer(int type, int x, int y, long eventTimeMs) {
+        long tail = mTail;
+        if (tail - mHead > mMask) {
+            mDropped++;
+            return false;
+        }
+        int slot = (int) tail & mMask;
+        mTypes[slot] = type;
+        mXs[slot] = x;
+        mYs[slot] = y;
+        mTimes[slot] = eventTimeMs;
+        mTail = tail + 1;
+        return true;
+    }
+
+    /** Hands every queued event to {@code consumer}; returns how many. */
+    public int drainTo(Consumer consumer) {
+        long head = mHead;
+        long tail = mTail;
+        for (long i = head; i < tail; i++) {
+            int slot = (int) i & mMask;
+            consumer.onTapEvent(mTypes[slot], mXs[slot], mYs[slot], mTimes[slot]);
+        }
+        mHead = tail;
+        return (int) (tail - head);
+    }
+
+    public boolean isEmpty() {
+        return mHead == mTail;
+    }
+
+    /** Number of events dropped because the queue was full. */
+    public long getDroppedCount() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface.render;
+
+/**
+ * Turns the watch face tap events (touch down, touch cancel, tap) into gestures: a tap, a double
+ * tap (a second tap soon after and near the first) or a cancelled touch. Event types match
+ * {@code WatchFaceService.TAP_TYPE_*}.
+ */
+public final class TapGestureDetector {
+
+    public static final int TYPE_TOUCH = 0;
+    public static final int TYPE_TOUCH_CANCEL = 1;
+    public static final int TYPE_TAP = 2;
+
+    public static final int GESTURE_TAP = 0;
+    public static final int GESTURE_DOUBLE_TAP = 1;
+    public static final int GESTURE_CANCEL = 2;
+
+    /** Longest time between two taps of a double tap. */
+    public static final long DOUBLE_TAP_TIMEOUT_MS = 300;
+    /** Farthest distance, in pixels, between two taps of a double tap. */
+    public static final int DOUBLE_TAP_SLOP = 48;
+
+    /** Receives recognized gestures. */
+    public interface Listener {
+        void onGesture(int gesture, int x, int y, long eventTimeMs);
+    }
+
+    private static final int STATE_IDLE = 0;
+    /* Finger down, waiting for the tap or the cancel. */
+    private static final int STATE_TOUCHING = 1;
+
+    private final Listener mListener;
+
+    private int mState = STATE_IDLE;
+    private int mTouchX;
+    private int mTouchY;
+
+    /* The last single tap, which a second tap may turn into a double tap. */
+    private boolean mTapPending;
+    private int mTapX;
+    private int mTapY;
+    private long mTapTimeMs;
+
+    public TapGestureDetector(Listener listener) {
+        mListener = listener;
+    }
+
+    public void onTapEvent(int type, int x, int y, long eventTimeMs) {
+        switch (type) {
+            case TYPE_TOUCH:
+                mState = STATE_TOUCHING;
+                mTouchX = x;
+                mTouchY = y;
+                break;
+            case TYPE_TOUCH_CANCEL:
+                if (mState == STATE_TOUCHING) {
+                    mState = STATE_IDLE;
+                    mTapPending = false;
+                    mListener.onGesture(GESTURE_CANCEL, mTouchX, mTouchY, eventTimeMs);
+                }
+                break;
+            case TYPE_TAP:
+                mState = STATE_IDLE;
+                if (mTapPending && eventTimeMs - mTapTimeMs <= DOUBLE_TAP_TIMEOUT_MS
+                        && Math.abs(x - mTapX) <= DOUBLE_TAP_SLOP
+                        && Math.abs(y - mTapY) <= DOUBLE_TAP_SLOP) {
+                    mTapPending = false;
+                    mListener.onGesture(GESTURE_DOUBLE_TAP, x, y, eventTimeMs);
+                } else {
+                    mTapPending = true;
+                    mTapX = x;
+                    mTapY = y;
+                    mTapTimeMs = eventTimeMs;
+                    mListener.onGesture(GESTURE_TAP, x, y, eventTimeMs);
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.t2labs.smileywatchface.render;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts bytes allocated by the current thread, using the HotSpot per-thread allocation counter.
+ */
+final class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean mThreadMXBean;
+    private final long mThreadId;
+    /* Bytes the counter itself allocates per measure, subtracted from every reading. */
+    private final long mOverhead;
+    private long mStart;
+
+    AllocationCounter() {
+        mThreadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        mThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        mThreadId = Thread.currentThread().getId();
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long start = mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+            long end = mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+            overhead = Math.min(overhead, end - start);
+        }
+        mOverhead = overhead;
+    }
+
+    static boolean isSupported() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .isThreadAllocatedMemorySupported();
+    }
+
+    void start() {
+        mStart = mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+    }
+
+    /** Bytes allocated on this thread since {@link #start()}. */
+    long stop() {
+        return mThreadMXBean.getThreadAllocatedBytes(mThreadId) - mStart - mOverhead;
+    }
+}
@@ -0,0 +1,111 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the burn-in protection helpers: the pixel shift cycle, the lit pixel count of the
+ * outline frames and the alpha masks the compact memory mode stores them as.
+ */
+public class BurnInTest {
+
+    private static final int MAX_OFFSET = 3;
+    private static final long PERIOD_MS = 60000;
+    private static final int SIZE = 64;
+
+    @Test
+    public void pixelShiftStaysWithinOnePeriod() {
+        PixelShift shift = new PixelShift(MAX_OFFSET, PERIOD_MS);
+        shift.setTime(5 * PERIOD_MS);
+        int x = shift.getX();
+        int y = shift.getY();
+        shift.setTime(6 * PERIOD_MS - 1);
+        assertEquals(x, shift.getX());
+        assertEquals(y, shift.getY());
+    }
+
+    @Test
+    public void pixelShiftVisitsEveryOffsetInBounds() {
+        PixelShift shift = new PixelShift(MAX_OFFSET, PERIOD_MS);
+        Set<Integer> offsets = new HashSet<>();
+        long start = 1444000000000L;
+        for (int period = 0; period < 9; period++) {
+            shift.setTime(start + period * PERIOD_MS);
+            assertTrue(Math.abs(shift.getX()) <= MAX_OFFSET);
+            assertTrue(Math.abs(shift.getY()) <= MAX_OFFSET);
+            offsets.add(shift.getX() * 100 + shift.getY());
+        }
+        assertEquals(9, offsets.size());
+
+        shift.setTime(start + 9 * PERIOD_MS);
+        int x = shift.getX();
+        int y = shift.getY();
+        shift.setTime(start);
+        assertEquals(x, shift.getX());
+        assertEquals(y, shift.getY());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pixelShiftNeedsAPeriod() {
+        new PixelShift(MAX_OFFSET, 0);
+    }
+
+    @Test
+    public void countsLitPixels() {
+        int[] pixels = {0xff000000, 0xffffffff, 0x00ffffff, 0xff202020, 0xff000000};
+        assertEquals(2, AmbientFilters.countLit(pixels, 0, pixels.length));
+        assertEquals(1, AmbientFilters.countLit(pixels, 2, 2));
+    }
+
+    @Test
+    public void outlineLightsFewPixels() {
+        int[] face = disc();
+        int filled = AmbientFilters.countLit(face, 0, face.length);
+        int[] outline = new int[face.length];
+        AmbientFilters.outline(face, SIZE, SIZE, outline);
+        int lit = AmbientFilters.countLit(outline, 0, outline.length);
+        assertTrue(lit > 0);
+        assertTrue("Outline lights " + lit + " of " + filled, lit * 10 < filled);
+    }
+
+    @Test
+    public void alphaMaskKeepsTheLitPixels() {
+        int[] outline = new int[SIZE * SIZE];
+        AmbientFilters.outline(disc(), SIZE, SIZE, outline);
+        /* Padded rows, like a bitmap with a wider row stride. */
+        int rowBytes = SIZE + 4;
+        byte[] mask = new byte[rowBytes * SIZE];
+        AmbientFilters.alphaMask(outline, SIZE, SIZE, rowBytes, mask);
+
+        int lit = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int alpha = mask[y * rowBytes + x] & 0xff;
+                assertEquals(outline[y * SIZE + x] == 0xffffffff ? 255 : 0, alpha);
+                if (alpha != 0) {
+                    lit++;
+                }
+            }
+        }
+        assertEquals(AmbientFilters.countLit(outline, 0, outline.length), lit);
+        assertTrue("Mask is blank", lit > 0);
+    }
+
+    /* A filled yellow disc on black, a third of the size across. */
+    private static int[] disc() {
+        int[] face = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int dx = x - SIZE / 2;
+                int dy = y - SIZE / 2;
+                face[y * SIZE + x] = dx * dx + dy * dy < SIZE * SIZE / 9 ? 0xffffcc00 : 0xff000000;
+            }
+        }
+        return face;
+    }
+}
@@ -0,0 +1,89 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the {@link ClockModel} fields against {@link Calendar} around and across DST transitions.
+ */
+public class ClockModelTest {
+
+    private static final String[] ZONES = {
+            "UTC", "America/New_York", "Europe/London", "Australia/Lord_Howe", "Asia/Kolkata",
+            "Pacific/Chatham", "America/Sao_Paulo"
+    };
+
+    /* 2015-03-08 06:00 UTC, shortly before the US spring forward. */
+    private static final long US_SPRING_FORWARD_MS = 1425794400000L;
+
+    @Test
+    public void matchesCalendarAtRandomTimes() {
+        Random random = new Random(42);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            ClockModel clock = new ClockModel(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            for (int i = 0; i < 2000; i++) {
+                /* Anywhere in 1970-2040, including before the epoch's first day. */
+                long time = (long) (random.nextDouble() * 2208988800000L) - 86400000L;
+                assertSameFields(id, clock, calendar, time);
+            }
+        }
+    }
+
+    @Test
+    public void matchesCalendarAcrossDstTransitions() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            ClockModel clock = new ClockModel(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            /* A year of frames every 7 minutes and 13 seconds, in increasing order. */
+            long start = US_SPRING_FORWARD_MS - 200L * 24 * 3600 * 1000;
+            for (long time = start; time < start + 366L * 24 * 3600 * 1000; time += 433000) {
+                assertSameFields(id, clock, calendar, time);
+            }
+        }
+    }
+
+    @Test
+    public void findsNextTransitionToTheMillisecond() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        ClockModel clock = new ClockModel(zone);
+        clock.setTime(US_SPRING_FORWARD_MS);
+        long transition = clock.getOffsetValidUntilMs();
+        assertEquals(US_SPRING_FORWARD_MS + 3600000L, transition);
+        assertTrue(zone.getOffset(transition - 1) != zone.getOffset(transition));
+    }
+
+    @Test
+    public void looksUpOffsetOnlyAtTransitionsAndZoneChanges() {
+        ClockModel clock = new ClockModel(TimeZone.getTimeZone("America/New_York"));
+        long time = US_SPRING_FORWARD_MS;
+        for (int second = 0; second < 7200; second++) {
+            clock.setTime(time + second * 1000L);
+        }
+        /* Once for the first frame, once at the transition an hour later. */
+        assertEquals(2, clock.getOffsetLookups());
+
+        clock.setTimeZone(TimeZone.getTimeZone("Europe/London"));
+        clock.setTime(time + 7200 * 1000L);
+        assertEquals(3, clock.getOffsetLookups());
+    }
+
+    private static void assertSameFields(String zone, ClockModel clock, Calendar calendar,
+            long time) {
+        clock.setTime(time);
+        calendar.setTimeInMillis(time);
+        String message = zone + " at " + time;
+        assertEquals(message, calendar.get(Calendar.HOUR), clock.getHour());
+        assertEquals(message, calendar.get(Calendar.MINUTE), clock.getMinute());
+        assertEquals(message, calendar.get(Calendar.SECOND), clock.getSecond());
+        assertEquals(message, calendar.get(Calendar.MILLISECOND), clock.getMillisecond());
+    }
+}
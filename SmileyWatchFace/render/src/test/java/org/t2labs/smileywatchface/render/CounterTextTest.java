@@ -0,0 +1,27 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the counter labels format their values, including the longest ones.
+ */
+public class CounterTextTest {
+
+    private final CounterText mTapText = new CounterText("TAP: ");
+    private final CounterText mCancelText = new CounterText("CANCEL: ");
+
+    @Test
+    public void formatsValues() {
+        assertEquals("TAP: 0", mTapText.toString());
+        mTapText.setValue(1234);
+        assertEquals("TAP: 1234", mTapText.toString());
+        mTapText.setValue(0);
+        assertEquals("TAP: 0", mTapText.toString());
+        mCancelText.setValue(Integer.MIN_VALUE);
+        assertEquals("CANCEL: " + Integer.MIN_VALUE, mCancelText.toString());
+        mCancelText.setValue(Integer.MAX_VALUE);
+        assertEquals("CANCEL: " + Integer.MAX_VALUE, mCancelText.toString());
+    }
+}
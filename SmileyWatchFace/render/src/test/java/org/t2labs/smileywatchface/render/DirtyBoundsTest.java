@@ -0,0 +1,99 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the areas {@link FaceRenderer} reports for the hands and the pupils, which decide what
+ * a backend redraws between frames.
+ */
+public class DirtyBoundsTest {
+
+    private static final int SIZE = 320;
+    private static final float CENTER = SIZE / 2f;
+    private static final float DELTA = 0.01f;
+
+    private FaceRenderer mRenderer;
+    private final Bounds mBounds = new Bounds();
+
+    @Before
+    public void setUp() {
+        mRenderer = new FaceRenderer();
+        mRenderer.setSurfaceSize(SIZE, SIZE);
+        mRenderer.getClock().setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    public void boundsStartEmptyAndGrow() {
+        assertTrue(mBounds.isEmpty());
+        mBounds.union(new Bounds());
+        mBounds.outset(4);
+        assertTrue(mBounds.isEmpty());
+
+        mBounds.union(10, 20);
+        assertFalse(mBounds.isEmpty());
+        mBounds.union(5, 30);
+        mBounds.outset(1);
+        assertBounds(4, 19, 11, 31);
+    }
+
+    @Test
+    public void handBoundsFollowTheHands() {
+        /* 3:00:00, hour hand to the right, minute and second hand straight up. */
+        mRenderer.setTime(time(3, 0, 0));
+        mRenderer.unionHandBounds(mBounds);
+        float radius = FaceRenderer.CENTER_GAP_AND_CIRCLE_RADIUS;
+        assertBounds(CENTER - radius, CENTER - CENTER * 0.875f, CENTER + CENTER * 0.5f,
+                CENTER + radius);
+
+        /* No second hand in ambient mode, minute hand down at 9:30. */
+        mRenderer.setAmbient(true);
+        mRenderer.setTime(time(9, 30, 0));
+        mBounds.setEmpty();
+        mRenderer.unionHandBounds(mBounds);
+        assertEquals(CENTER + CENTER * 0.75f, mBounds.bottom, DELTA);
+        assertTrue(mBounds.top > CENTER - CENTER * 0.5f);
+    }
+
+    @Test
+    public void pupilBoundsCoverTheWholeEyeRoll() {
+        mRenderer.unionPupilBounds(mBounds);
+        assertTrue("Frame faces have no pupils of their own", mBounds.isEmpty());
+
+        mRenderer.setFaceMode(FaceRenderer.FACE_PROCEDURAL);
+        mRenderer.unionPupilBounds(mBounds);
+        float scale = SIZE / ProceduralSmiley.REFERENCE_SIZE;
+        ProceduralSmiley smiley = new ProceduralSmiley();
+        for (float position = 0; position <= 4; position += 0.05f) {
+            smiley.setRollPosition(position);
+            float y = smiley.getPupilY();
+            float radiusX = smiley.getPupilRadiusX() + ProceduralSmiley.PUPIL_OUTLINE_WIDTH;
+            float radiusY = smiley.getPupilRadiusY() + ProceduralSmiley.PUPIL_OUTLINE_WIDTH;
+            assertTrue((smiley.getLeftPupilX() - radiusX) * scale >= mBounds.left);
+            assertTrue((smiley.getRightPupilX() + radiusX) * scale <= mBounds.right);
+            assertTrue((y - radiusY) * scale >= mBounds.top);
+            assertTrue((y + radiusY) * scale <= mBounds.bottom);
+        }
+    }
+
+    private void assertBounds(float left, float top, float right, float bottom) {
+        assertEquals(left, mBounds.left, DELTA);
+        assertEquals(top, mBounds.top, DELTA);
+        assertEquals(right, mBounds.right, DELTA);
+        assertEquals(bottom, mBounds.bottom, DELTA);
+    }
+
+    private static long time(int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(2015, Calendar.OCTOBER, 4, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+}
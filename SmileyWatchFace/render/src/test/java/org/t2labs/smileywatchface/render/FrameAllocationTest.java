@@ -0,0 +1,175 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.t2labs.smileywatchface.render.KeyframeAnimation.Easing;
+import org.t2labs.smileywatchface.render.KeyframeAnimation.Keyframe;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the per-frame work of the render path over a simulated frame loop and fails if any frame
+ * allocates once the loop is warmed up.
+ */
+public class FrameAllocationTest {
+
+    private static final int WARM_UP_FRAMES = 20000;
+    /*
+     * A deoptimization in the measured window can allocate a few bytes once on this thread
+     * (objects escape analysis had scalar replaced). Late branches of the frame loop still
+     * trigger those after a couple of rounds, so the loop is warmed up for at least the minimum
+     * rounds and then until one goes by without the JIT compiling anything.
+     */
+    private static final int MIN_WARM_UP_ROUNDS = 5;
+    private static final int MAX_WARM_UP_ROUNDS = 10;
+    private static final int MEASURED_FRAMES = 5000;
+    private static final long FRAME_MS = 16;
+
+    private KeyframeAnimation mEyeRoll;
+    private CounterText mTapText;
+    private CounterText mCancelText;
+    private long mSink;
+
+    private FaceRenderer mRenderer;
+    private final Bounds mDirty = new Bounds();
+    private final DrawingSurface mSurface = new DrawingSurface() {
+        @Override
+        public void drawBackground(int frame, int variant) {
+            mSink += frame + variant;
+        }
+
+        @Override
+        public void drawPupil(float centerX, float centerY, float radiusX, float radiusY,
+                int variant) {
+            mSink += (long) (centerX + centerY + radiusX + radiusY);
+        }
+
+        @Override
+        public void drawCounterText(char[] text, int length, float x, float y) {
+            mSink += text[length - 1];
+        }
+
+        @Override
+        public void drawHand(int hand, float degrees, float centerX, float centerY,
+                float innerRadius, float outerRadius) {
+            mSink += (long) degrees;
+        }
+
+        @Override
+        public void drawCenterCircle(float centerX, float centerY, float radius) {
+            mSink += (long) radius;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(AllocationCounter.isSupported());
+        mEyeRoll = new KeyframeAnimation(
+                new Keyframe(1, 150, Easing.EASE_IN),
+                new Keyframe(2, 150, Easing.LINEAR),
+                new Keyframe(3, 150, Easing.LINEAR),
+                new Keyframe(4, 150, Easing.EASE_OUT));
+        mTapText = new CounterText("TAP: ");
+        mCancelText = new CounterText("CANCEL: ");
+        mRenderer = new FaceRenderer();
+        mRenderer.setSurfaceSize(320, 320);
+        mRenderer.getClock().setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    public void steadyStateFramesDoNotAllocate() {
+        long time = warmUp(0, false);
+
+        AllocationCounter counter = new AllocationCounter();
+        counter.start();
+        runFrames(time, MEASURED_FRAMES);
+        long allocated = counter.stop();
+
+        assertEquals("Bytes allocated over " + MEASURED_FRAMES + " frames", 0, allocated);
+    }
+
+    @Test
+    public void rendererFramesDoNotAllocate() {
+        long time = warmUp(0, true);
+
+        AllocationCounter counter = new AllocationCounter();
+        counter.start();
+        renderFrames(time, MEASURED_FRAMES);
+        long allocated = counter.stop();
+
+        assertEquals("Bytes allocated over " + MEASURED_FRAMES + " frames", 0, allocated);
+    }
+
+    @Test
+    public void proceduralFaceFramesDoNotAllocate() {
+        mRenderer.setFaceMode(FaceRenderer.FACE_PROCEDURAL);
+        rendererFramesDoNotAllocate();
+    }
+
+    /**
+     * Runs rounds of {@link #renderFrames} (or {@link #runFrames}) until the JIT compiled nothing
+     * during a whole round past the minimum. Without compilation time monitoring, runs all the
+     * rounds.
+     */
+    private long warmUp(long time, boolean renderer) {
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean monitored = jit != null && jit.isCompilationTimeMonitoringSupported();
+        long compilationMs = -1;
+        for (int round = 0; round < MAX_WARM_UP_ROUNDS; round++) {
+            time = renderer ? renderFrames(time, WARM_UP_FRAMES) : runFrames(time, WARM_UP_FRAMES);
+            if (monitored) {
+                long total = jit.getTotalCompilationTime();
+                if (total == compilationMs && round >= MIN_WARM_UP_ROUNDS) {
+                    break;
+                }
+                compilationMs = total;
+            }
+        }
+        return time;
+    }
+
+    private long renderFrames(long time, int frames) {
+        for (int i = 0; i < frames; i++) {
+            time += FRAME_MS;
+            if (i % 100 == 0) {
+                mRenderer.getEyeRoll().start(time);
+            }
+            if (i % 10 == 0) {
+                mRenderer.setCounters(i / 10, i / 50);
+            }
+            mRenderer.drawFrame(mSurface, time, time);
+            mDirty.setEmpty();
+            mRenderer.unionHandBounds(mDirty);
+            mRenderer.unionPupilBounds(mDirty);
+            mSink += (long) mDirty.right;
+        }
+        return time;
+    }
+
+    private long runFrames(long time, int frames) {
+        for (int i = 0; i < frames; i++) {
+            time += FRAME_MS;
+            /* Restart the eye roll every so often, like a tap would. */
+            if (i % 100 == 0) {
+                mEyeRoll.start(time);
+            }
+            /* Counter text changes a few times a second during a tap burst. */
+            if (i % 10 == 0) {
+                mTapText.setValue(i / 10);
+                mCancelText.setValue(i / 50);
+            }
+            int frame = mEyeRoll.frameAt(time);
+            float fraction = mEyeRoll.fractionAt(time);
+            long delay = mEyeRoll.delayToNextKeyframeMs(time);
+            mSink += frame + (long) (fraction * 1000) + delay
+                    + mTapText.getChars()[mTapText.length() - 1]
+                    + mCancelText.getChars()[mCancelText.length() - 1];
+        }
+        return time;
+    }
+}
@@ -0,0 +1,57 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks what the eye roll shows when a frame failed to load: the resting face in its place,
+ * until the frame is loaded after all.
+ */
+public class MissingFrameTest {
+
+    private FaceRenderer mRenderer;
+
+    @Before
+    public void setUp() {
+        mRenderer = new FaceRenderer();
+        mRenderer.getEyeRoll().start(0);
+    }
+
+    @Test
+    public void eyeRollShowsEveryLoadedFrame() {
+        for (int frame = 1; frame < FaceRenderer.FRAME_COUNT; frame++) {
+            assertEquals(frame, shownAt(frame));
+        }
+    }
+
+    @Test
+    public void missingFrameFallsBackToTheRestingFace() {
+        mRenderer.setFrameMissing(2, true);
+        assertEquals(1, shownAt(1));
+        assertEquals(0, shownAt(2));
+        assertEquals(3, shownAt(3));
+
+        mRenderer.setFrameMissing(2, false);
+        assertEquals(2, shownAt(2));
+    }
+
+    @Test
+    public void missingFrameFallsBackInAmbientMode() {
+        mRenderer.setAmbient(true);
+        mRenderer.setFrameMissing(4, true);
+        int background = mRenderer.getBackground(eyeRollTime(4));
+        assertEquals(0, FaceRenderer.backgroundFrame(background));
+        assertEquals(DrawingSurface.VARIANT_GRAY, FaceRenderer.backgroundVariant(background));
+    }
+
+    /* Frame shown in the middle of eye roll position {@code position}, 1-4. */
+    private int shownAt(int position) {
+        return FaceRenderer.backgroundFrame(mRenderer.getBackground(eyeRollTime(position)));
+    }
+
+    private static long eyeRollTime(int position) {
+        return (position - 1) * FaceRenderer.EYE_ROLL_FRAME_MS + FaceRenderer.EYE_ROLL_FRAME_MS / 2;
+    }
+}
@@ -0,0 +1,71 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the pupil path of the procedural eye roll: it leaves and comes back to the resting
+ * pupils, passes each frame's pose halfway through its keyframe and never jumps in between.
+ */
+public class ProceduralSmileyTest {
+
+    private static final float DELTA = 0.01f;
+    /* Largest pupil move, in reference pixels, between positions STEP apart. */
+    private static final float STEP = 0.01f;
+    private static final float MAX_MOVE = 1.5f;
+
+    private final ProceduralSmiley mSmiley = new ProceduralSmiley();
+
+    @Test
+    public void rollStartsAndEndsAtRest() {
+        mSmiley.setRollPosition(-1f);
+        float restX = mSmiley.getLeftPupilX();
+        float restY = mSmiley.getPupilY();
+        assertEquals(ProceduralSmiley.EYE_LEFT_X, restX, DELTA);
+        assertEquals(ProceduralSmiley.EYE_Y, restY, DELTA);
+
+        mSmiley.setRollPosition(0f);
+        assertPupil(restX, restY, ProceduralSmiley.PUPIL_RADIUS_X);
+        mSmiley.setRollPosition(4f);
+        assertPupil(restX, restY, ProceduralSmiley.PUPIL_RADIUS_X);
+    }
+
+    @Test
+    public void rollLooksRightDownLeftUpHalfwayThroughEachKeyframe() {
+        mSmiley.setRollPosition(0.5f);
+        assertTrue(mSmiley.getLeftPupilX() > ProceduralSmiley.EYE_LEFT_X);
+        assertEquals(ProceduralSmiley.EYE_Y, mSmiley.getPupilY(), DELTA);
+        mSmiley.setRollPosition(1.5f);
+        assertEquals(ProceduralSmiley.EYE_LEFT_X, mSmiley.getLeftPupilX(), DELTA);
+        assertTrue(mSmiley.getPupilY() > ProceduralSmiley.EYE_Y);
+        mSmiley.setRollPosition(2.5f);
+        assertTrue(mSmiley.getLeftPupilX() < ProceduralSmiley.EYE_LEFT_X);
+        assertEquals(ProceduralSmiley.EYE_Y, mSmiley.getPupilY(), DELTA);
+        mSmiley.setRollPosition(3.5f);
+        assertEquals(ProceduralSmiley.EYE_LEFT_X, mSmiley.getLeftPupilX(), DELTA);
+        assertTrue(mSmiley.getPupilY() < ProceduralSmiley.EYE_Y);
+    }
+
+    @Test
+    public void pupilsNeverJump() {
+        mSmiley.setRollPosition(-1f);
+        float x = mSmiley.getLeftPupilX();
+        float y = mSmiley.getPupilY();
+        for (int i = 0; i * STEP <= 4f; i++) {
+            mSmiley.setRollPosition(i * STEP);
+            assertTrue("Pupils jump at position " + i * STEP,
+                    Math.abs(mSmiley.getLeftPupilX() - x) <= MAX_MOVE
+                            && Math.abs(mSmiley.getPupilY() - y) <= MAX_MOVE);
+            x = mSmiley.getLeftPupilX();
+            y = mSmiley.getPupilY();
+        }
+    }
+
+    private void assertPupil(float x, float y, float radiusX) {
+        assertEquals(x, mSmiley.getLeftPupilX(), DELTA);
+        assertEquals(y, mSmiley.getPupilY(), DELTA);
+        assertEquals(radiusX, mSmiley.getPupilRadiusX(), DELTA);
+    }
+}
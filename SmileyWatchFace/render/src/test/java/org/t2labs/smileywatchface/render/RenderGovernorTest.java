@@ -0,0 +1,89 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the tiers {@link RenderGovernor} picks for its inputs, the battery hysteresis and the
+ * time accounted to each tier.
+ */
+public class RenderGovernorTest {
+
+    private final RenderGovernor mGovernor = new RenderGovernor();
+
+    @Test
+    public void picksTiersFromInputs() {
+        assertFalse(mGovernor.evaluate(0));
+        assertEquals(RenderGovernor.TIER_FULL, mGovernor.getTier());
+
+        mGovernor.setMuteMode(true);
+        assertTier(RenderGovernor.TIER_REDUCED, RenderGovernor.REASON_MUTE);
+        assertTrue(mGovernor.showsSecondHand());
+        assertFalse(mGovernor.showsShadows());
+
+        mGovernor.setMuteMode(false);
+        mGovernor.setPeekCardCoverage(0.6f);
+        assertTier(RenderGovernor.TIER_REDUCED, RenderGovernor.REASON_PEEK_CARD);
+
+        mGovernor.setPowerSaveMode(true);
+        assertTier(RenderGovernor.TIER_SAVER,
+                RenderGovernor.REASON_PEEK_CARD | RenderGovernor.REASON_POWER_SAVE);
+        assertFalse(mGovernor.showsSecondHand());
+        assertFalse(mGovernor.allowsAnimation());
+        assertEquals(60 * 1000, mGovernor.getUpdateIntervalMs());
+
+        mGovernor.setPowerSaveMode(false);
+        mGovernor.setPeekCardCoverage(0.2f);
+        mGovernor.setBatteryTemperature(RenderGovernor.HOT_TEMPERATURE);
+        assertTier(RenderGovernor.TIER_SAVER, RenderGovernor.REASON_HOT);
+
+        mGovernor.setBatteryTemperature(RenderGovernor.HOT_TEMPERATURE - 1);
+        assertTier(RenderGovernor.TIER_SAVER, RenderGovernor.REASON_HOT);
+        mGovernor.setBatteryTemperature(300);
+        assertTier(RenderGovernor.TIER_FULL, 0);
+        assertEquals(1000, mGovernor.getUpdateIntervalMs());
+    }
+
+    @Test
+    public void batteryHasHysteresisAndChargingWins() {
+        mGovernor.setBattery(RenderGovernor.BATTERY_LOW_PERCENT, false);
+        assertTier(RenderGovernor.TIER_REDUCED, RenderGovernor.REASON_BATTERY_LOW);
+        mGovernor.setBattery(RenderGovernor.BATTERY_CRITICAL_PERCENT, false);
+        assertTier(RenderGovernor.TIER_SAVER, RenderGovernor.REASON_BATTERY_CRITICAL);
+
+        /* Within the hysteresis of the critical threshold. */
+        mGovernor.setBattery(RenderGovernor.BATTERY_CRITICAL_PERCENT + 3, false);
+        assertTier(RenderGovernor.TIER_SAVER, RenderGovernor.REASON_BATTERY_CRITICAL);
+        mGovernor.setBattery(RenderGovernor.BATTERY_CRITICAL_PERCENT + 6, false);
+        assertTier(RenderGovernor.TIER_REDUCED, RenderGovernor.REASON_BATTERY_LOW);
+        mGovernor.setBattery(RenderGovernor.BATTERY_LOW_PERCENT + 4, false);
+        assertTier(RenderGovernor.TIER_REDUCED, RenderGovernor.REASON_BATTERY_LOW);
+
+        mGovernor.setBattery(RenderGovernor.BATTERY_CRITICAL_PERCENT, true);
+        assertTier(RenderGovernor.TIER_FULL, 0);
+    }
+
+    @Test
+    public void countsSwitchesAndTimeInTiers() {
+        mGovernor.evaluate(1000);
+        mGovernor.setMuteMode(true);
+        assertTrue(mGovernor.evaluate(3000));
+        assertFalse(mGovernor.evaluate(3500));
+        mGovernor.setMuteMode(false);
+        assertTrue(mGovernor.evaluate(4000));
+
+        assertEquals(2, mGovernor.getSwitchCount());
+        assertEquals(2000 + 500, mGovernor.getTimeInTierMs(RenderGovernor.TIER_FULL, 4500));
+        assertEquals(1000, mGovernor.getTimeInTierMs(RenderGovernor.TIER_REDUCED, 4500));
+        assertEquals(0, mGovernor.getTimeInTierMs(RenderGovernor.TIER_SAVER, 4500));
+    }
+
+    private void assertTier(int tier, int reasons) {
+        mGovernor.evaluate(0);
+        assertEquals(RenderGovernor.tierName(tier), RenderGovernor.tierName(mGovernor.getTier()));
+        assertEquals(reasons, mGovernor.getReasons());
+    }
+}
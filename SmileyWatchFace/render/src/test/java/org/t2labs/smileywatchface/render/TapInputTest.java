@@ -0,0 +1,116 @@
+package org.t2labs.smileywatchface.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the tap event queue (ordering, wrap-around and overflow) and the gestures recognized
+ * from the drained events.
+ */
+public class TapInputTest {
+
+    private final List<long[]> mEvents = new ArrayList<>();
+    private final TapEventQueue.Consumer mRecorder = new TapEventQueue.Consumer() {
+        @Override
+        public void onTapEvent(int type, int x, int y, long eventTimeMs) {
+            mEvents.add(new long[] {type, x, y, eventTimeMs});
+        }
+    };
+
+    private final List<int[]> mGestures = new ArrayList<>();
+    private TapGestureDetector mDetector;
+
+    @Before
+    public void setUp() {
+        mDetector = new TapGestureDetector(new TapGestureDetector.Listener() {
+            @Override
+            public void onGesture(int gesture, int x, int y, long eventTimeMs) {
+                mGestures.add(new int[] {gesture, x, y});
+            }
+        });
+    }
+
+    @Test
+    public void drainsInOrderAcrossWrapAround() {
+        TapEventQueue queue = new TapEventQueue(4);
+        int next = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3; i++, next++) {
+                assertTrue(queue.offer(next % 3, next, -next, next * 10L));
+            }
+            mEvents.clear();
+            assertEquals(3, queue.drainTo(mRecorder));
+            assertTrue(queue.isEmpty());
+            for (int i = 0; i < 3; i++) {
+                long expected = next - 3 + i;
+                assertEquals(expected % 3, mEvents.get(i)[0]);
+                assertEquals(expected, mEvents.get(i)[1]);
+                assertEquals(-expected, mEvents.get(i)[2]);
+                assertEquals(expected * 10, mEvents.get(i)[3]);
+            }
+        }
+    }
+
+    @Test
+    public void dropsEventsWhenFull() {
+        TapEventQueue queue = new TapEventQueue(2);
+        assertTrue(queue.offer(0, 1, 1, 1));
+        assertTrue(queue.offer(0, 2, 2, 2));
+        assertFalse(queue.offer(0, 3, 3, 3));
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(2, queue.drainTo(mRecorder));
+        assertTrue(queue.offer(0, 4, 4, 4));
+        assertEquals(1, queue.drainTo(mRecorder));
+        assertEquals(4, mEvents.get(2)[1]);
+    }
+
+    @Test
+    public void recognizesTapAndDoubleTap() {
+        tap(160, 160, 1000);
+        tap(170, 150, 1000 + TapGestureDetector.DOUBLE_TAP_TIMEOUT_MS);
+        /* Too late to pair with the tap before. */
+        tap(170, 150, 2000);
+        /* Too far from the tap before. */
+        tap(300, 160, 2100);
+
+        assertEquals(4, mGestures.size());
+        assertGesture(0, TapGestureDetector.GESTURE_TAP, 160, 160);
+        assertGesture(1, TapGestureDetector.GESTURE_DOUBLE_TAP, 170, 150);
+        assertGesture(2, TapGestureDetector.GESTURE_TAP, 170, 150);
+        assertGesture(3, TapGestureDetector.GESTURE_TAP, 300, 160);
+    }
+
+    @Test
+    public void cancelEndsTheTouchAndThePendingTap() {
+        tap(160, 20, 1000);
+        mDetector.onTapEvent(TapGestureDetector.TYPE_TOUCH, 160, 20, 1100);
+        mDetector.onTapEvent(TapGestureDetector.TYPE_TOUCH_CANCEL, 0, 0, 1150);
+        /* A stray cancel without a touch is ignored. */
+        mDetector.onTapEvent(TapGestureDetector.TYPE_TOUCH_CANCEL, 0, 0, 1160);
+        tap(160, 20, 1200);
+
+        assertEquals(3, mGestures.size());
+        assertGesture(0, TapGestureDetector.GESTURE_TAP, 160, 20);
+        /* Reported where the cancelled touch went down. */
+        assertGesture(1, TapGestureDetector.GESTURE_CANCEL, 160, 20);
+        assertGesture(2, TapGestureDetector.GESTURE_TAP, 160, 20);
+    }
+
+    private void tap(int x, int y, long timeMs) {
+        mDetector.onTapEvent(TapGestureDetector.TYPE_TOUCH, x, y, timeMs - 50);
+        mDetector.onTapEvent(TapGestureDetector.TYPE_TAP, x, y, timeMs);
+    }
+
+    private void assertGesture(int index, int gesture, int x, int y) {
+        assertEquals("gesture " + index, gesture, mGestures.get(index)[0]);
+        assertEquals("x " + index, x, mGestures.get(index)[1]);
+        assertEquals("y " + index, y, mGestures.get(index)[2]);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+
+import org.t2labs.smileywatchface.render.AmbientFilters;
+import org.t2labs.smileywatchface.render.DrawingSurface;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the ambient versions (gray, low-bit, burn-in outline) of the face frames on a background
+ * thread, so surface changes and entering ambient mode never block the main thread on pixel work.
+ *
+ * <p>The worker copies each color frame's pixels itself, under the generation check: submitting a
+ * new job or calling {@link #cancel()} waits for a copy in progress, so the caller may release
+ * the frames right after. Apart from that read the worker only touches its copy and the
+ * {@link FrameDiskCache}. Each finished bitmap is handed to the {@link Listener} on the main
+ * thread as a whole. Results of stale jobs are recycled instead of delivered.
+ */
+class AmbientAssetPipeline {
+
+    /** Receives finished bitmaps, on the main thread. */
+    interface Listener {
+        void onVariantReady(int frame, int variant, Bitmap bitmap);
+    }
+
+    /* Disk cache variant names, indexed by DrawingSurface.VARIANT_*. */
+    private static final String[] DISK_VARIANTS = {
+            FrameDiskCache.VARIANT_COLOR,
+            FrameDiskCache.VARIANT_GRAY,
+            FrameDiskCache.VARIANT_LOW_BIT,
+            FrameDiskCache.VARIANT_BURN_IN
+    };
+
+    private final FrameDiskCache mDiskCache;
+    private final Handler mMainHandler;
+    private final Listener mListener;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            new BackgroundThreadFactory("AmbientAssetPipeline"));
+
+    /* Bumped for every submit and cancel; results of older jobs are dropped. */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    /* Held while bumping the generation and while a worker reads a frame's pixels. */
+    private final Object mSourceLock = new Object();
+
+    AmbientAssetPipeline(FrameDiskCache diskCache, Handler mainHandler, Listener listener) {
+        mDiskCache = diskCache;
+        mMainHandler = mainHandler;
+        mListener = listener;
+    }
+
+    /**
+     * Starts building {@code variant} of every frame, the resting face first, as bitmaps of
+     * {@code config} (ARGB_8888, or ALPHA_8 for masks). Must be called on the main thread;
+     * frames that are null are skipped. The frames must stay unrecycled until the next submit or
+     * {@link #cancel()}.
+     */
+    void submit(int[] resIds, Bitmap[] frames, int variant, Bitmap.Config config,
+            int surfaceWidth, int surfaceHeight) {
+        int generation = nextGeneration();
+        for (int i = 0; i < frames.length; i++) {
+            Bitmap frame = frames[i];
+            if (frame == null || frame.isRecycled()) {
+                continue;
+            }
+            mExecutor.execute(new DeriveJob(generation, resIds[i], i, variant, config, frame,
+                    surfaceWidth, surfaceHeight));
+        }
+    }
+
+    /**
+     * Drops the results of all submitted jobs; once it returns, no job reads a frame any more.
+     * Main thread only.
+     */
+    void cancel() {
+        nextGeneration();
+    }
+
+    private int nextGeneration() {
+        synchronized (mSourceLock) {
+            return mGeneration.incrementAndGet();
+        }
+    }
+
+    void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+    }
+
+    private final class DeriveJob implements Runnable {
+        private final int mJobGeneration;
+        private final int mResId;
+        private final int mFrame;
+        private final int mVariant;
+        private final Bitmap.Config mConfig;
+        private final Bitmap mSource;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mSurfaceWidth;
+        private final int mSurfaceHeight;
+
+        DeriveJob(int generation, int resId, int frame, int variant, Bitmap.Config config,
+                Bitmap source, int surfaceWidth, int surfaceHeight) {
+            mJobGeneration = generation;
+            mResId = resId;
+            mFrame = frame;
+            mVariant = variant;
+            mConfig = config;
+            mSource = source;
+            mWidth = source.getWidth();
+            mHeight = source.getHeight();
+            mSurfaceWidth = surfaceWidth;
+            mSurfaceHeight = surfaceHeight;
+        }
+
+        @Override
+        public void run() {
+            if (mJobGeneration != mGeneration.get()) {
+                return;
+            }
+            String diskVariant = DISK_VARIANTS[mVariant];
+            Bitmap bitmap = mDiskCache.load(mResId, diskVariant, mSurfaceWidth, mSurfaceHeight,
+                    mConfig, null);
+            if (bitmap == null) {
+                int[] pixels = copyPixels();
+                if (pixels == null) {
+                    return;
+                }
+                /* Derive in place, the snapshot isn't needed afterwards. */
+                AmbientFilters.derive(mVariant, pixels, mWidth, mHeight, pixels);
+                if (mConfig == Bitmap.Config.ALPHA_8) {
+                    bitmap = MemoryMode.createAlphaMask(pixels, mWidth, mHeight);
+                } else {
+                    bitmap = Bitmap.createBitmap(pixels, mWidth, mHeight, mConfig);
+                }
+                mDiskCache.store(mResId, diskVariant, mSurfaceWidth, mSurfaceHeight, bitmap);
+            }
+            final Bitmap result = bitmap;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mJobGeneration == mGeneration.get()) {
+                        mListener.onVariantReady(mFrame, mVariant, result);
+                    } else {
+                        result.recycle();
+                    }
+                }
+            });
+        }
+
+        /* Snapshot of the source frame, or null if the job went stale before it was read. */
+        private int[] copyPixels() {
+            synchronized (mSourceLock) {
+                if (mJobGeneration != mGeneration.get() || mSource.isRecycled()) {
+                    return null;
+                }
+                int[] pixels = new int[mWidth * mHeight];
+                mSource.getPixels(pixels, 0, mWidth, 0, 0, mWidth, mHeight);
+                return pixels;
+            }
+        }
+    }
+}
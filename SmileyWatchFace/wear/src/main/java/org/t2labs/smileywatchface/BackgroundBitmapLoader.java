@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+/**
+ * Decodes background drawables straight to the surface size. A bounds-only pass picks the
+ * largest power of two {@code inSampleSize} that still covers the target, and density scaling
+ * ({@code inDensity}/{@code inTargetDensity}) takes the rest of the way in the same decode, so no
+ * full size copy is ever held next to the scaled one. Frames are decoded straight into the
+ * memory mode's config where the decoder supports it, so no ARGB_8888 copy is held either.
+ */
+class BackgroundBitmapLoader {
+
+    private static final String TAG = "BackgroundBitmapLoader";
+
+    private final Resources mResources;
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+
+    BackgroundBitmapLoader(Resources resources) {
+        mResources = resources;
+    }
+
+    /**
+     * Decodes {@code resId} scaled to {@code targetWidth}, keeping the aspect ratio.
+     *
+     * @param config preferred config of the result. The decoder only honours RGB_565 for opaque
+     *               images and can't decode to ALPHA_8 at all; those come back in ARGB_8888.
+     * @param reuse bitmap that is no longer needed (e.g. the same frame at the previous surface
+     *              size). Its memory is used for the result when it is large enough, otherwise
+     *              it is recycled. May be null.
+     */
+    Bitmap decode(int resId, int targetWidth, Bitmap.Config config, Bitmap reuse) {
+        BitmapFactory.Options options = mOptions;
+
+        /* Bounds only, without density scaling, to get the real pixel size of the resource. */
+        resetOptions(options);
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, resId, options);
+        int sourceWidth = options.outWidth;
+        int sourceHeight = options.outHeight;
+        if (sourceWidth <= 0 || sourceHeight <= 0 || targetWidth <= 0) {
+            recycle(reuse);
+            return null;
+        }
+        int targetHeight = Math.round(sourceHeight * (targetWidth / (float) sourceWidth));
+
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        int sampledWidth = sourceWidth / sampleSize;
+
+        resetOptions(options);
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        if (config != Bitmap.Config.ALPHA_8) {
+            options.inPreferredConfig = config;
+        }
+        if (sampledWidth != targetWidth) {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = targetWidth;
+        } else {
+            options.inScaled = false;
+        }
+        if (canReuse(reuse, targetWidth, targetHeight, options.inPreferredConfig)) {
+            options.inBitmap = reuse;
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeResource(mResources, resId, options);
+        } catch (IllegalArgumentException e) {
+            /* The decoder refused the reuse bitmap, decode into fresh memory instead. */
+            Log.w(TAG, "Could not decode into existing bitmap", e);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeResource(mResources, resId, options);
+        }
+        if (reuse != null && bitmap != reuse) {
+            recycle(reuse);
+        }
+
+        /* Density scaling rounds, fix up any off-by-one and release the intermediate. */
+        if (bitmap != null
+                && (bitmap.getWidth() != targetWidth || bitmap.getHeight() != targetHeight)) {
+            Bitmap exact = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+            if (exact != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = exact;
+        }
+        options.inBitmap = null;
+        return bitmap;
+    }
+
+    private static boolean canReuse(Bitmap reuse, int width, int height, Bitmap.Config config) {
+        return reuse != null
+                && !reuse.isRecycled()
+                && reuse.isMutable()
+                && reuse.getAllocationByteCount()
+                        >= width * height * MemoryMode.bytesPerPixel(config);
+    }
+
+    private static void recycle(Bitmap bitmap) {
+        if (bitmap != null && !bitmap.isRecycled()) {
+            bitmap.recycle();
+        }
+    }
+
+    private static void resetOptions(BitmapFactory.Options options) {
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        options.inScaled = true;
+        options.inDensity = 0;
+        options.inTargetDensity = 0;
+        options.inScreenDensity = 0;
+        options.inMutable = false;
+        options.inBitmap = null;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory cache of decoded and derived face bitmaps, keyed by resource, size, config and
+ * variant ({@code DrawingSurface.VARIANT_*}), so switching back and forth between surface sizes
+ * (e.g. the picker preview and the active face) neither decodes again nor leaks the bitmaps of the
+ * other size. One cache is shared by all engines of the service, so an engine for a size that
+ * is already loaded costs no decoding and no memory.
+ *
+ * <p>The cache owns its bitmaps: it is bounded by a byte budget and evicts the least recently
+ * used entries first. Engines take a reference on each bitmap they draw ({@link #get} and
+ * {@link #put}) and give it back with {@link #release}; a bitmap is recycled once it has left
+ * the cache and no engine holds it any more. The cached bitmaps are shared, so nobody may draw
+ * into them. Main thread only.
+ */
+class BitmapCache {
+
+    private final LruCache<String, Bitmap> mCache;
+    /* References held by engines, per bitmap; bitmaps without references aren't in here. */
+    private final IdentityHashMap<Bitmap, Integer> mReferences = new IdentityHashMap<>();
+    /* Bitmaps that left the cache while referenced, recycled on their last release. */
+    private final Set<Bitmap> mEvicted = Collections.newSetFromMap(
+            new IdentityHashMap<Bitmap, Boolean>());
+
+    BitmapCache(int maxBytes) {
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+                    Bitmap newValue) {
+                if (oldValue == newValue || oldValue.isRecycled()) {
+                    return;
+                }
+                if (mReferences.containsKey(oldValue)) {
+                    mEvicted.add(oldValue);
+                } else {
+                    oldValue.recycle();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the cached bitmap, marking it most recently used, or null. Takes a reference on
+     * the bitmap for the caller.
+     */
+    Bitmap get(int resId, int width, int height, Bitmap.Config config, int variant) {
+        return retain(mCache.get(key(resId, width, height, config, variant)));
+    }
+
+    /**
+     * Caches {@code bitmap}, possibly evicting least recently used bitmaps, and takes a reference
+     * on it for the caller.
+     */
+    void put(int resId, int width, int height, Bitmap.Config config, int variant,
+            Bitmap bitmap) {
+        if (bitmap != null) {
+            retain(bitmap);
+            mCache.put(key(resId, width, height, config, variant), bitmap);
+        }
+    }
+
+    /** Gives back a reference taken by {@link #get} or {@link #put}; null is ignored. */
+    void release(Bitmap bitmap) {
+        Integer references = mReferences.get(bitmap);
+        if (references == null) {
+            return;
+        }
+        if (references > 1) {
+            mReferences.put(bitmap, references - 1);
+            return;
+        }
+        mReferences.remove(bitmap);
+        if (mEvicted.remove(bitmap) && !bitmap.isRecycled()) {
+            bitmap.recycle();
+        }
+    }
+
+    /** Releases and clears every entry of {@code bitmaps}. */
+    void releaseAll(Bitmap[] bitmaps) {
+        for (int i = 0; i < bitmaps.length; i++) {
+            release(bitmaps[i]);
+            bitmaps[i] = null;
+        }
+    }
+
+    /** Recycles every cached bitmap no engine holds, e.g. under memory pressure. */
+    void evictUnreferenced() {
+        for (Map.Entry<String, Bitmap> entry : mCache.snapshot().entrySet()) {
+            if (!mReferences.containsKey(entry.getValue())) {
+                mCache.remove(entry.getKey());
+            }
+        }
+    }
+
+    /** Grows the budget to at least {@code bytes}; never shrinks it. */
+    void ensureBudget(int bytes) {
+        if (bytes > mCache.maxSize()) {
+            mCache.resize(bytes);
+        }
+    }
+
+    /** Recycles every cached bitmap that isn't referenced, the others on their last release. */
+    void clear() {
+        mCache.evictAll();
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("bitmapCache: " + mCache.size() + "/" + mCache.maxSize() + " bytes"
+                + " hits=" + mCache.hitCount()
+                + " misses=" + mCache.missCount()
+                + " puts=" + mCache.putCount()
+                + " evictions=" + mCache.evictionCount()
+                + " referenced=" + mReferences.size()
+                + " evictedReferenced=" + mEvicted.size());
+        for (Map.Entry<String, Bitmap> entry : mCache.snapshot().entrySet()) {
+            writer.print(prefix);
+            Integer references = mReferences.get(entry.getValue());
+            writer.println("  " + entry.getKey() + ": "
+                    + MemoryMode.bytesOf(entry.getValue()) + " bytes"
+                    + " references=" + (references != null ? references : 0));
+        }
+    }
+
+    private Bitmap retain(Bitmap bitmap) {
+        if (bitmap != null) {
+            Integer references = mReferences.get(bitmap);
+            mReferences.put(bitmap, references != null ? references + 1 : 1);
+        }
+        return bitmap;
+    }
+
+    private static String key(int resId, int width, int height, Bitmap.Config config,
+            int variant) {
+        return Integer.toHexString(resId) + '_' + width + 'x' + height + '_' + config.name()
+                + '_' + variant;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import org.t2labs.smileywatchface.render.DrawingSurface;
+import org.t2labs.smileywatchface.render.ProceduralSmiley;
+
+/**
+ * {@link DrawingSurface} on an {@link android.graphics.Canvas}. The engine owns the paints and
+ * bitmaps and hands them over once; the target canvas is swapped per draw (surface canvas or the
+ * static layer). Hands are drawn from {@link HandSprites} when set, otherwise as plain strokes.
+ * Pupils of the procedural face are one cached path, moved and scaled to each pose.
+ */
+class CanvasDrawingSurface implements DrawingSurface {
+
+    private Canvas mCanvas;
+
+    /* Indexed by variant, then frame; entries may be null until loaded. */
+    private Bitmap[][] mBackgroundBitmaps;
+    private Paint mBackgroundPaint;
+    /* Draws ALPHA_8 backgrounds (ambient masks of the compact memory mode) in white. */
+    private final Paint mMaskPaint = new Paint();
+    private Paint mTextPaint;
+    private final Paint[] mHandPaints = new Paint[3];
+    private Paint mCirclePaint;
+    private HandSprites mHandSprites;
+
+    /* Resting pupil, centered on the origin. */
+    private final Path mPupilPath = new Path();
+    private final RectF mPupilOval = new RectF();
+    private final Paint mPupilPaint = new Paint();
+    private float mPupilRadiusX = 1;
+    private float mPupilRadiusY = 1;
+
+    void setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    void setBackgrounds(Bitmap[][] backgroundBitmaps, Paint paint) {
+        mBackgroundBitmaps = backgroundBitmaps;
+        mBackgroundPaint = paint;
+        mMaskPaint.setColor(Color.WHITE);
+    }
+
+    void setPaints(Paint hourPaint, Paint minutePaint, Paint secondPaint, Paint circlePaint,
+            Paint textPaint) {
+        mHandPaints[HAND_HOUR] = hourPaint;
+        mHandPaints[HAND_MINUTE] = minutePaint;
+        mHandPaints[HAND_SECOND] = secondPaint;
+        mCirclePaint = circlePaint;
+        mTextPaint = textPaint;
+    }
+
+    /** Builds the pupil path for the resting pupil size, and the outline width, on the surface. */
+    void setPupilSize(float radiusX, float radiusY, float outlineWidth) {
+        mPupilRadiusX = radiusX;
+        mPupilRadiusY = radiusY;
+        mPupilOval.set(-radiusX, -radiusY, radiusX, radiusY);
+        mPupilPath.reset();
+        mPupilPath.addOval(mPupilOval, Path.Direction.CW);
+        mPupilPaint.setStrokeWidth(outlineWidth);
+    }
+
+    /** Sprites for the hands and center circle, or null to stroke them (ambient mode). */
+    void setHandSprites(HandSprites handSprites) {
+        mHandSprites = handSprites;
+    }
+
+    @Override
+    public void drawBackground(int frame, int variant) {
+        Bitmap bitmap = getBackground(frame, variant);
+        if (bitmap != null && bitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+            mCanvas.drawColor(Color.BLACK);
+            mCanvas.drawBitmap(bitmap, 0, 0, mMaskPaint);
+        } else if (bitmap != null) {
+            mCanvas.drawBitmap(bitmap, 0, 0, mBackgroundPaint);
+        } else {
+            mCanvas.drawColor(Color.BLACK);
+        }
+    }
+
+    @Override
+    public void drawPupil(float centerX, float centerY, float radiusX, float radiusY,
+            int variant) {
+        /* No pupils on black while the face base of this version is being built. */
+        if (getBackground(0, variant) == null) {
+            return;
+        }
+        mPupilPaint.setColor(ProceduralSmiley.pupilColor(variant));
+        mPupilPaint.setStyle(ProceduralSmiley.isPupilOutlined(variant)
+                ? Paint.Style.STROKE : Paint.Style.FILL);
+        /* Ambient versions are drawn without anti-aliasing, like the hands. */
+        mPupilPaint.setAntiAlias(variant == VARIANT_COLOR);
+        mCanvas.save();
+        mCanvas.translate(centerX, centerY);
+        mCanvas.scale(radiusX / mPupilRadiusX, radiusY / mPupilRadiusY);
+        mCanvas.drawPath(mPupilPath, mPupilPaint);
+        mCanvas.restore();
+    }
+
+    private Bitmap getBackground(int frame, int variant) {
+        if (frame >= 0 && mBackgroundBitmaps != null && mBackgroundBitmaps[variant] != null
+                && frame < mBackgroundBitmaps[variant].length) {
+            return mBackgroundBitmaps[variant][frame];
+        }
+        return null;
+    }
+
+    @Override
+    public void drawCounterText(char[] text, int length, float x, float y) {
+        mCanvas.drawText(text, 0, length, x, y, mTextPaint);
+    }
+
+    @Override
+    public void drawHand(int hand, float degrees, float centerX, float centerY,
+            float innerRadius, float outerRadius) {
+        if (mHandSprites != null) {
+            mHandSprites.drawHand(mCanvas, hand, mHandPaints[hand], degrees, centerX, centerY,
+                    innerRadius, outerRadius);
+            return;
+        }
+        mCanvas.save();
+        mCanvas.rotate(degrees, centerX, centerY);
+        mCanvas.drawLine(
+                centerX,
+                centerY - innerRadius,
+                centerX,
+                centerY - outerRadius,
+                mHandPaints[hand]);
+        mCanvas.restore();
+    }
+
+    @Override
+    public void drawCenterCircle(float centerX, float centerY, float radius) {
+        if (mHandSprites != null) {
+            mHandSprites.drawCircle(mCanvas, mCirclePaint, centerX, centerY, radius);
+            return;
+        }
+        mCanvas.drawCircle(centerX, centerY, radius, mCirclePaint);
+    }
+}
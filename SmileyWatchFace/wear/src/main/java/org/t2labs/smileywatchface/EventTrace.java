@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.PrintWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Process-wide trace of fixed-size binary events (timestamp, event id, two arguments) kept in a
+ * preallocated ring buffer and printed by {@code dumpsys}. Replaces logging on hot paths.
+ *
+ * <p>Compiled in only when {@code BuildConfig.TRACE_ENABLED} is set (debug builds). Call sites
+ * guard with {@code if (EventTrace.ENABLED)} so release builds keep neither the calls nor the
+ * buffer. Events are only recorded on the main thread, where the engine runs, so recording is a
+ * few plain array writes. {@link #dump} copies the buffer on the main thread before printing it.
+ */
+final class EventTrace {
+
+    static final boolean ENABLED = BuildConfig.TRACE_ENABLED;
+
+    /* Event ids; keep EVENT_NAMES in sync. */
+    static final int EVENT_DRAW = 0;
+    static final int EVENT_TAP = 1;
+    static final int EVENT_EYE_ROLL = 2;
+    static final int EVENT_SURFACE_CHANGED = 3;
+    static final int EVENT_AMBIENT = 4;
+    static final int EVENT_VISIBILITY = 5;
+    static final int EVENT_TIMER = 6;
+    static final int EVENT_GESTURE = 7;
+    static final int EVENT_RENDER_TIER = 8;
+    static final int EVENT_PRELOAD = 9;
+
+    private static final String[] EVENT_NAMES = {
+            "draw",
+            "tap",
+            "eye-roll",
+            "surface-changed",
+            "ambient",
+            "visibility",
+            "timer",
+            "gesture",
+            "render-tier",
+            "preload",
+    };
+
+    /* Must be a power of two. */
+    private static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+
+    /* How long dump() waits for the main thread to copy the buffer. */
+    private static final long DUMP_TIMEOUT_MS = 1000;
+
+    /* Sequence number of the next event. The buffer is only touched on the main thread. */
+    private static long sNextSequence;
+    private static final long[] sTimes = ENABLED ? new long[CAPACITY] : null;
+    private static final int[] sEvents = ENABLED ? new int[CAPACITY] : null;
+    private static final long[] sArgs1 = ENABLED ? new long[CAPACITY] : null;
+    private static final long[] sArgs2 = ENABLED ? new long[CAPACITY] : null;
+
+    private EventTrace() {
+    }
+
+    /** Records an event; {@code nowNanos} is {@code System.nanoTime()}. Main thread only. */
+    static void record(int event, long nowNanos, long arg1, long arg2) {
+        if (!ENABLED) {
+            return;
+        }
+        int slot = (int) (sNextSequence++ & MASK);
+        sTimes[slot] = nowNanos;
+        sEvents[slot] = event;
+        sArgs1[slot] = arg1;
+        sArgs2[slot] = arg2;
+    }
+
+    static void record(int event, long arg1, long arg2) {
+        if (!ENABLED) {
+            return;
+        }
+        record(event, System.nanoTime(), arg1, arg2);
+    }
+
+    /**
+     * Prints the buffered events, oldest first. May be called on any thread (dumpsys calls it on
+     * a binder thread): the buffer is copied on the main thread, waiting for it a limited time.
+     */
+    static void dump(PrintWriter writer) {
+        if (!ENABLED) {
+            writer.println("EventTrace: disabled in this build");
+            return;
+        }
+        Snapshot snapshot;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            snapshot = new Snapshot();
+        } else {
+            FutureTask<Snapshot> copy = new FutureTask<>(new Callable<Snapshot>() {
+                @Override
+                public Snapshot call() {
+                    return new Snapshot();
+                }
+            });
+            new Handler(Looper.getMainLooper()).post(copy);
+            try {
+                snapshot = copy.get(DUMP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writer.println("EventTrace: interrupted");
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                writer.println("EventTrace: main thread did not respond: " + e);
+                return;
+            }
+        }
+
+        long first = Math.max(0, snapshot.mNext - CAPACITY);
+        writer.println("EventTrace: " + (snapshot.mNext - first) + " of " + snapshot.mNext
+                + " events");
+        for (long sequence = first; sequence < snapshot.mNext; sequence++) {
+            int slot = (int) (sequence & MASK);
+            int event = snapshot.mEvents[slot];
+            writer.print("  ");
+            writer.print(snapshot.mTimes[slot] / 1000);
+            writer.print("us ");
+            writer.print(event >= 0 && event < EVENT_NAMES.length ? EVENT_NAMES[event] : event);
+            writer.print(' ');
+            writer.print(snapshot.mArgs1[slot]);
+            writer.print(' ');
+            writer.println(snapshot.mArgs2[slot]);
+        }
+    }
+
+    /* Copy of the buffer; must be taken on the main thread. */
+    private static final class Snapshot {
+        final long mNext = sNextSequence;
+        final long[] mTimes = sTimes.clone();
+        final int[] mEvents = sEvents.clone();
+        final long[] mArgs1 = sArgs1.clone();
+        final long[] mArgs2 = sArgs2.clone();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * On-disk cache of final (scaled, derived) face frames as raw, uncompressed pixels. Frames are
+ * read back through a memory-mapped {@link FileChannel} straight into
+ * {@link Bitmap#copyPixelsFromBuffer}, so a restarted service skips PNG inflate and scaling.
+ *
+ * <p>Entries are keyed by resource id, variant, surface size and {@link Bitmap.Config}. Each file
+ * carries a header with a format version and the package's install/update stamp; an entry written
+ * by another format version or before the resources last changed (app update) is deleted on load,
+ * or by {@link #sweep}, which also drops the entries of other surface sizes.
+ * Holds no mutable state, so different entries may be read and written from different threads.
+ */
+class FrameDiskCache {
+
+    private static final String TAG = "FrameDiskCache";
+
+    /**
+     * Bump when the file layout changes, or to drop bad entries: version 1 could hold blank
+     * ALPHA_8 masks.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x534d4c59; // "SMLY"
+
+    /* magic, version, resource stamp, width, height, config, pixel byte count */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+
+    private static final String DIRECTORY = "frames";
+
+    static final String VARIANT_COLOR = "color";
+    static final String VARIANT_GRAY = "gray";
+    static final String VARIANT_LOW_BIT = "lowbit";
+    static final String VARIANT_BURN_IN = "burnin";
+
+    private final File mDirectory;
+    private final long mResourceStamp;
+
+    FrameDiskCache(Context context) {
+        mDirectory = new File(context.getCacheDir(), DIRECTORY);
+        mResourceStamp = resourceStamp(context);
+    }
+
+    /**
+     * Loads a cached frame, or returns null on a miss.
+     *
+     * @param reuse bitmap whose memory is used for the result if possible, otherwise recycled
+     *              on a hit. Left alone on a miss. May be null.
+     */
+    Bitmap load(int resId, String variant, int surfaceWidth, int surfaceHeight,
+            Bitmap.Config config, Bitmap reuse) {
+        File file = fileFor(resId, variant, surfaceWidth, surfaceHeight, config);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                delete(file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long stamp = buffer.getLong();
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int configOrdinal = buffer.getInt();
+            int byteCount = buffer.getInt();
+            if (magic != MAGIC
+                    || version != FORMAT_VERSION
+                    || stamp != mResourceStamp
+                    || configOrdinal != config.ordinal()
+                    || width <= 0 || height <= 0
+                    || byteCount != size - HEADER_SIZE) {
+                /* Stale or foreign entry, the resources or the format changed. */
+                delete(file);
+                return null;
+            }
+
+            Bitmap bitmap;
+            if (reuse != null && !reuse.isRecycled() && reuse.isMutable()
+                    && reuse.getAllocationByteCount() >= byteCount) {
+                reuse.reconfigure(width, height, config);
+                bitmap = reuse;
+            } else {
+                if (reuse != null && !reuse.isRecycled()) {
+                    reuse.recycle();
+                }
+                bitmap = Bitmap.createBitmap(width, height, config);
+            }
+            if (bitmap.getByteCount() != byteCount) {
+                delete(file);
+                if (bitmap != reuse) {
+                    bitmap.recycle();
+                }
+                return null;
+            }
+            bitmap.copyPixelsFromBuffer(buffer);
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read " + file, e);
+            delete(file);
+            return null;
+        } finally {
+            close(raf);
+        }
+    }
+
+    /** Writes {@code bitmap} to the cache, replacing any previous entry for the same key. */
+    void store(int resId, String variant, int surfaceWidth, int surfaceHeight, Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getConfig() == null) {
+            return;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        File file = fileFor(resId, variant, surfaceWidth, surfaceHeight, bitmap.getConfig());
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        int byteCount = bitmap.getByteCount();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(temp, "rw");
+            raf.setLength(HEADER_SIZE + byteCount);
+            MappedByteBuffer buffer = raf.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + byteCount);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(mResourceStamp);
+            buffer.putInt(bitmap.getWidth());
+            buffer.putInt(bitmap.getHeight());
+            buffer.putInt(bitmap.getConfig().ordinal());
+            buffer.putInt(byteCount);
+            bitmap.copyPixelsToBuffer(buffer);
+            buffer.force();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not write " + file, e);
+            close(raf);
+            delete(temp);
+            return;
+        }
+        close(raf);
+        /* Rename last so a reader never sees a half written entry. */
+        if (!temp.renameTo(file)) {
+            delete(temp);
+        }
+    }
+
+    /**
+     * Deletes the entries that can't be loaded any more: other surface sizes, format versions or
+     * resource stamps, and temp files of interrupted writes for other sizes. Temp files of the
+     * current size are left, the next store of their entry reuses them. Reads the directory and
+     * each entry's header, so call it off the main thread.
+     */
+    void sweep(int surfaceWidth, int surfaceHeight) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        String size = "_" + surfaceWidth + 'x' + surfaceHeight + '_';
+        for (File file : files) {
+            String name = file.getName();
+            boolean current = name.contains(size)
+                    && (name.endsWith(".tmp") || name.endsWith(".raw") && isCurrent(file));
+            if (!current) {
+                delete(file);
+            }
+        }
+    }
+
+    /* Whether the header of {@code file} is of this format version and resource stamp. */
+    private boolean isCurrent(File file) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            return raf.length() >= HEADER_SIZE
+                    && raf.readInt() == MAGIC
+                    && raf.readInt() == FORMAT_VERSION
+                    && raf.readLong() == mResourceStamp;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            close(raf);
+        }
+    }
+
+    private File fileFor(int resId, String variant, int width, int height, Bitmap.Config config) {
+        return new File(mDirectory, Integer.toHexString(resId) + '_' + variant + '_'
+                + width + 'x' + height + '_' + config.name() + ".raw");
+    }
+
+    /** Changes whenever the APK (and with it the drawables) is installed or updated. */
+    private static long resourceStamp(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0);
+            return info.lastUpdateTime * 31 + info.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
+
+    private static void close(RandomAccessFile raf) {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // Ignore, nothing left to release.
+            }
+        }
+    }
+}
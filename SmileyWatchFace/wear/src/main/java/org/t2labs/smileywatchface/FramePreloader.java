@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the color face frames at surface size on a background thread, so the main thread never
+ * waits on a decode: from the {@link FrameDiskCache}, else decoded from the resources (and
+ * stored on disk), or, for the procedural face, drawn. The resting face is loaded first, at
+ * default priority, since nothing can be shown without it; the eye roll frames follow at
+ * background priority.
+ *
+ * <p>Each frame is handed to the {@link Listener} on the main thread as it is ready, or reported
+ * as failed when it could be neither loaded nor decoded. Loading
+ * again or calling {@link #cancel()} makes the pending results of earlier loads stale; those are
+ * recycled instead of delivered.
+ */
+class FramePreloader {
+
+    /** Receives loaded frames, on the main thread. */
+    interface Listener {
+        void onFrameLoaded(int frame, Bitmap bitmap, long loadMs);
+
+        /** {@code frame} could not be loaded; it won't be delivered. */
+        void onFrameFailed(int frame);
+    }
+
+    private final FrameDiskCache mDiskCache;
+    private final Handler mMainHandler;
+    private final Listener mListener;
+    /* Only used on the worker thread. */
+    private final BackgroundBitmapLoader mLoader;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            new BackgroundThreadFactory("FramePreloader"));
+
+    /* Bumped for every load and cancel; results of older loads are dropped. */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    FramePreloader(Resources resources, FrameDiskCache diskCache, Handler mainHandler,
+            Listener listener) {
+        mDiskCache = diskCache;
+        mMainHandler = mainHandler;
+        mListener = listener;
+        mLoader = new BackgroundBitmapLoader(resources);
+    }
+
+    /**
+     * Starts loading the frames of {@code resIds} whose {@code skip} entry is false, frame 0
+     * first, as bitmaps of {@code config}. With {@code procedural} the single frame is the
+     * procedural face base. Once they are in, sweeps the disk cache of entries for other surface
+     * sizes. Main thread only.
+     */
+    void load(int[] resIds, boolean[] skip, boolean procedural, Bitmap.Config config,
+            final int surfaceWidth, final int surfaceHeight) {
+        final int generation = mGeneration.incrementAndGet();
+        long startMs = SystemClock.uptimeMillis();
+        for (int i = 0; i < resIds.length; i++) {
+            if (!skip[i]) {
+                mExecutor.execute(new LoadJob(generation, resIds[i], i, procedural, config,
+                        surfaceWidth, surfaceHeight, startMs));
+            }
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration.get()) {
+                    mDiskCache.sweep(surfaceWidth, surfaceHeight);
+                }
+            }
+        });
+    }
+
+    /** Drops the results of all pending loads. Main thread only. */
+    void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+    }
+
+    private final class LoadJob implements Runnable {
+        private final int mJobGeneration;
+        private final int mResId;
+        private final int mFrame;
+        private final boolean mProcedural;
+        private final Bitmap.Config mConfig;
+        private final int mSurfaceWidth;
+        private final int mSurfaceHeight;
+        private final long mStartMs;
+
+        LoadJob(int generation, int resId, int frame, boolean procedural, Bitmap.Config config,
+                int surfaceWidth, int surfaceHeight, long startMs) {
+            mJobGeneration = generation;
+            mResId = resId;
+            mFrame = frame;
+            mProcedural = procedural;
+            mConfig = config;
+            mSurfaceWidth = surfaceWidth;
+            mSurfaceHeight = surfaceHeight;
+            mStartMs = startMs;
+        }
+
+        @Override
+        public void run() {
+            if (mJobGeneration != mGeneration.get()) {
+                return;
+            }
+            Process.setThreadPriority(mFrame == 0
+                    ? Process.THREAD_PRIORITY_DEFAULT : Process.THREAD_PRIORITY_BACKGROUND);
+            final Bitmap bitmap = loadFrame();
+            if (bitmap == null) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mJobGeneration == mGeneration.get()) {
+                            mListener.onFrameFailed(mFrame);
+                        }
+                    }
+                });
+                return;
+            }
+            final long loadMs = SystemClock.uptimeMillis() - mStartMs;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mJobGeneration == mGeneration.get()) {
+                        mListener.onFrameLoaded(mFrame, bitmap, loadMs);
+                    } else {
+                        bitmap.recycle();
+                    }
+                }
+            });
+        }
+
+        /*
+         * Frames are decoded in the memory mode's config, and converted when the decoder couldn't
+         * do that; the procedural face is drawn in ARGB_8888 and converted. Its base is only a few
+         * paths, so it is drawn again instead of cached on disk. Returns null if the frame
+         * couldn't be decoded.
+         */
+        private Bitmap loadFrame() {
+            if (mProcedural) {
+                return MemoryMode.convert(ProceduralFace.createBase(mSurfaceWidth), mConfig);
+            }
+            Bitmap bitmap = mDiskCache.load(mResId, FrameDiskCache.VARIANT_COLOR, mSurfaceWidth,
+                    mSurfaceHeight, mConfig, null);
+            if (bitmap == null) {
+                bitmap = MemoryMode.convert(mLoader.decode(mResId, mSurfaceWidth, mConfig, null),
+                        mConfig);
+                if (bitmap == null) {
+                    return null;
+                }
+                mDiskCache.store(mResId, FrameDiskCache.VARIANT_COLOR, mSurfaceWidth,
+                        mSurfaceHeight, bitmap);
+            }
+            return bitmap;
+        }
+    }
+}
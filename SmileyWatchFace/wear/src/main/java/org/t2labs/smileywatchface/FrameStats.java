@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-engine frame timing: fixed-bucket histograms of draw duration and of the interval between
+ * frames, missed deadlines per render mode, the cost of each part of a draw and of each draw
+ * path (software or hardware canvas). Everything lives in primitive arrays allocated up front, so
+ * recording a frame never allocates. Printed by the service's {@code dump()}; the engine
+ * {@link #reset() resets} it when the face becomes visible or changes mode, so the numbers
+ * cover the current stretch only.
+ */
+final class FrameStats {
+
+    static final int MODE_INTERACTIVE = 0;
+    static final int MODE_AMBIENT = 1;
+    static final int MODE_EYE_ROLL = 2;
+    private static final String[] MODE_NAMES = {"interactive", "ambient", "eye-roll"};
+
+    static final int PHASE_BACKGROUND = 0;
+    static final int PHASE_HANDS = 1;
+    static final int PHASE_TEXT = 2;
+    private static final String[] PHASE_NAMES = {"background", "hands", "text"};
+
+    /* How the frame reached the screen. */
+    static final int PATH_SOFTWARE = 0;
+    static final int PATH_HARDWARE = 1;
+    /* In software into a bitmap, blitted onto the hardware canvas. */
+    static final int PATH_SOFTWARE_FALLBACK = 2;
+    private static final String[] PATH_NAMES = {"software", "hardware", "software-fallback"};
+
+    /** A frame that takes longer than this to draw, or starts this late, missed its deadline. */
+    static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    /* Upper bounds (inclusive) of the histogram buckets; the last bucket takes the rest. */
+    private static final long[] DRAW_BUCKETS_MICROS =
+            {250, 500, 1000, 2000, 4000, 8000, 16000, 33000, 66000};
+    private static final long[] INTERVAL_BUCKETS_MILLIS =
+            {16, 33, 66, 125, 250, 500, 1000, 2000, 5000, 60000};
+
+    private final int[] mDrawHistogram = new int[DRAW_BUCKETS_MICROS.length + 1];
+    private final int[] mIntervalHistogram = new int[INTERVAL_BUCKETS_MILLIS.length + 1];
+
+    private final int[] mFrames = new int[MODE_NAMES.length];
+    private final int[] mMissedDeadlines = new int[MODE_NAMES.length];
+
+    private final long[] mPhaseTotalNanos = new long[PHASE_NAMES.length];
+    private final long[] mPhaseMaxNanos = new long[PHASE_NAMES.length];
+    private final int[] mPhaseCount = new int[PHASE_NAMES.length];
+
+    private final int[] mPathFrames = new int[PATH_NAMES.length];
+    private final long[] mPathTotalNanos = new long[PATH_NAMES.length];
+    private final long[] mPathMaxNanos = new long[PATH_NAMES.length];
+
+    private long mMaxDrawNanos;
+    private long mLastFrameStartNanos;
+
+    private int mMode;
+    private int mPath;
+    private long mFrameStartNanos;
+    private long mExpectedStartNanos;
+
+    /**
+     * Starts timing a frame.
+     *
+     * @param path {@code PATH_*} the frame is drawn through
+     * @param expectedStartNanos when the scheduler wanted this frame drawn, or 0 if the frame
+     *                           wasn't scheduled (e.g. requested by the system).
+     */
+    void beginFrame(int mode, int path, long nowNanos, long expectedStartNanos) {
+        mMode = mode;
+        mPath = path;
+        mFrameStartNanos = nowNanos;
+        mExpectedStartNanos = expectedStartNanos;
+        if (mLastFrameStartNanos != 0) {
+            long intervalMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - mLastFrameStartNanos);
+            mIntervalHistogram[bucket(INTERVAL_BUCKETS_MILLIS, intervalMillis)]++;
+        }
+        mLastFrameStartNanos = nowNanos;
+    }
+
+    /** Adds the time spent in one part of the current frame. */
+    void addPhase(int phase, long nanos) {
+        mPhaseTotalNanos[phase] += nanos;
+        mPhaseCount[phase]++;
+        if (nanos > mPhaseMaxNanos[phase]) {
+            mPhaseMaxNanos[phase] = nanos;
+        }
+    }
+
+    void endFrame(long nowNanos) {
+        long drawNanos = nowNanos - mFrameStartNanos;
+        mDrawHistogram[bucket(DRAW_BUCKETS_MICROS, TimeUnit.NANOSECONDS.toMicros(drawNanos))]++;
+        if (drawNanos > mMaxDrawNanos) {
+            mMaxDrawNanos = drawNanos;
+        }
+        mFrames[mMode]++;
+        mPathFrames[mPath]++;
+        mPathTotalNanos[mPath] += drawNanos;
+        if (drawNanos > mPathMaxNanos[mPath]) {
+            mPathMaxNanos[mPath] = drawNanos;
+        }
+        boolean late = mExpectedStartNanos != 0
+                && mFrameStartNanos - mExpectedStartNanos > FRAME_BUDGET_NANOS;
+        if (late || drawNanos > FRAME_BUDGET_NANOS) {
+            mMissedDeadlines[mMode]++;
+        }
+    }
+
+    void reset() {
+        clear(mDrawHistogram);
+        clear(mIntervalHistogram);
+        clear(mFrames);
+        clear(mMissedDeadlines);
+        clear(mPhaseCount);
+        clear(mPathFrames);
+        for (int i = 0; i < mPathTotalNanos.length; i++) {
+            mPathTotalNanos[i] = 0;
+            mPathMaxNanos[i] = 0;
+        }
+        for (int i = 0; i < mPhaseTotalNanos.length; i++) {
+            mPhaseTotalNanos[i] = 0;
+            mPhaseMaxNanos[i] = 0;
+        }
+        mMaxDrawNanos = 0;
+        mLastFrameStartNanos = 0;
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("Frames (missed deadline / total):");
+        for (int mode = 0; mode < MODE_NAMES.length; mode++) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(MODE_NAMES[mode]);
+            writer.print(": ");
+            writer.print(mMissedDeadlines[mode]);
+            writer.print(" / ");
+            writer.println(mFrames[mode]);
+        }
+
+        writer.print(prefix);
+        writer.print("Draw duration (us), max ");
+        writer.print(TimeUnit.NANOSECONDS.toMicros(mMaxDrawNanos));
+        writer.println(':');
+        dumpHistogram(writer, prefix, DRAW_BUCKETS_MICROS, mDrawHistogram);
+
+        writer.print(prefix);
+        writer.println("Frame interval (ms):");
+        dumpHistogram(writer, prefix, INTERVAL_BUCKETS_MILLIS, mIntervalHistogram);
+
+        writer.print(prefix);
+        writer.println("Draw cost (avg / max us):");
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            int count = mPhaseCount[phase];
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(PHASE_NAMES[phase]);
+            writer.print(": ");
+            writer.print(count == 0 ? 0
+                    : TimeUnit.NANOSECONDS.toMicros(mPhaseTotalNanos[phase] / count));
+            writer.print(" / ");
+            writer.print(TimeUnit.NANOSECONDS.toMicros(mPhaseMaxNanos[phase]));
+            writer.print(" (");
+            writer.print(count);
+            writer.println(" samples)");
+        }
+
+        writer.print(prefix);
+        writer.println("Draw cost per path (avg / max us):");
+        for (int path = 0; path < PATH_NAMES.length; path++) {
+            int count = mPathFrames[path];
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(PATH_NAMES[path]);
+            writer.print(": ");
+            writer.print(count == 0 ? 0
+                    : TimeUnit.NANOSECONDS.toMicros(mPathTotalNanos[path] / count));
+            writer.print(" / ");
+            writer.print(TimeUnit.NANOSECONDS.toMicros(mPathMaxNanos[path]));
+            writer.print(" (");
+            writer.print(count);
+            writer.println(" frames)");
+        }
+    }
+
+    private static void dumpHistogram(PrintWriter writer, String prefix, long[] bounds,
+            int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            writer.print(prefix);
+            writer.print("  ");
+            if (i < bounds.length) {
+                writer.print("<=");
+                writer.print(bounds[i]);
+            } else {
+                writer.print(">");
+                writer.print(bounds[bounds.length - 1]);
+            }
+            writer.print(": ");
+            writer.println(counts[i]);
+        }
+    }
+
+    private static int bucket(long[] bounds, long value) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (value <= bounds[i]) {
+                return i;
+            }
+        }
+        return bounds.length;
+    }
+
+    private static void clear(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = 0;
+        }
+    }
+}
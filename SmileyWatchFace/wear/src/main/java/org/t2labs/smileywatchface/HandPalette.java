@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.support.v7.graphics.Palette;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Hand colors picked from each face frame with {@link Palette}: the light vibrant color for the
+ * hands, the vibrant color for the second hand and the dark muted color for the shadows.
+ *
+ * <p>Extraction runs on a background thread on a subsampled decode of the frame. The result is
+ * kept in {@link SharedPreferences} under a CRC32 of the resource's bytes, so each image is only
+ * analyzed once, not on every service start, and a changed image gets new colors.
+ */
+class HandPalette {
+
+    private static final String TAG = "HandPalette";
+
+    private static final String PREFERENCES = "hand_palette";
+
+    /* Palette works on a small image anyway; decode no wider than this. */
+    private static final int SAMPLE_WIDTH = 100;
+
+    /** Receives the colors of a frame, on the main thread. */
+    interface Listener {
+        void onColorsReady(int frame, int handColor, int highlightColor, int shadowColor);
+    }
+
+    private final Resources mResources;
+    /* The engine's own hand colors, for frames without a matching swatch. */
+    private final int mDefaultHandColor;
+    private final int mDefaultHighlightColor;
+    private final int mDefaultShadowColor;
+    private final SharedPreferences mPreferences;
+    private final Handler mMainHandler;
+    private final Listener mListener;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            new BackgroundThreadFactory(TAG));
+    private volatile boolean mShutdown;
+
+    /**
+     * Takes the engine's default hand, highlight and shadow colors. A frame keeps a default where
+     * {@link Palette} finds no swatch for it, so that color looks as it did without the palette.
+     */
+    HandPalette(Context context, int handColor, int highlightColor, int shadowColor,
+            Handler mainHandler, Listener listener) {
+        mResources = context.getResources();
+        mDefaultHandColor = handColor;
+        mDefaultHighlightColor = highlightColor;
+        mDefaultShadowColor = shadowColor;
+        mPreferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        mMainHandler = mainHandler;
+        mListener = listener;
+    }
+
+    /** Looks up or extracts the colors of every frame, in order. */
+    void load(int[] resIds) {
+        for (int i = 0; i < resIds.length; i++) {
+            final int frame = i;
+            final int resId = resIds[i];
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mShutdown) {
+                        loadColors(frame, resId);
+                    }
+                }
+            });
+        }
+    }
+
+    void shutdown() {
+        mShutdown = true;
+        mExecutor.shutdownNow();
+    }
+
+    private void loadColors(final int frame, int resId) {
+        String key;
+        try {
+            key = Long.toHexString(checksum(resId));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read frame " + frame, e);
+            return;
+        }
+        final int handColor;
+        final int highlightColor;
+        final int shadowColor;
+        if (mPreferences.contains(key + ".shadow")) {
+            handColor = mPreferences.getInt(key + ".hand", mDefaultHandColor);
+            highlightColor = mPreferences.getInt(key + ".highlight", mDefaultHighlightColor);
+            shadowColor = mPreferences.getInt(key + ".shadow", mDefaultShadowColor);
+        } else {
+            Bitmap sample = decodeSample(resId);
+            if (sample == null) {
+                return;
+            }
+            Palette palette = Palette.from(sample).generate();
+            sample.recycle();
+            handColor = palette.getLightVibrantColor(mDefaultHandColor);
+            highlightColor = palette.getVibrantColor(mDefaultHighlightColor);
+            shadowColor = palette.getDarkMutedColor(mDefaultShadowColor);
+            mPreferences.edit()
+                    .putInt(key + ".hand", handColor)
+                    .putInt(key + ".highlight", highlightColor)
+                    .putInt(key + ".shadow", shadowColor)
+                    .apply();
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Frame " + frame + ": hand=" + Integer.toHexString(handColor)
+                    + " highlight=" + Integer.toHexString(highlightColor)
+                    + " shadow=" + Integer.toHexString(shadowColor));
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mShutdown) {
+                    mListener.onColorsReady(frame, handColor, highlightColor, shadowColor);
+                }
+            }
+        });
+    }
+
+    /*
+     * CRC32 of the encoded resource and the default colors, which changes whenever the image
+     * does, or the colors stored for a frame without swatches would.
+     */
+    private long checksum(int resId) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        InputStream in = mResources.openRawResource(resId);
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        int[] defaults = {mDefaultHandColor, mDefaultHighlightColor, mDefaultShadowColor};
+        for (int color : defaults) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                crc.update(color >>> shift);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private Bitmap decodeSample(int resId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, resId, options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= SAMPLE_WIDTH) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeResource(mResources, resId, options);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+import org.t2labs.smileywatchface.render.DrawingSurface;
+
+/**
+ * Hands and center circle pre-rendered into small {@link Bitmap.Config#ALPHA_8} masks, one for
+ * the stroke and one for its blurred shadow, drawn each frame with a rotation {@link Matrix}
+ * instead of stroking a line with a shadow layer (a software blur per hand per frame).
+ *
+ * <p>Masks take their color from the paint they are drawn with, so hand colors, the shadow color
+ * and the paint's alpha (mute mode) can change every frame for free. A mask is only baked the
+ * first time it is drawn and again when its length, stroke or the shadow radius changes.
+ */
+class HandSprites {
+
+    private static final int CIRCLE = 3;
+    private static final int SPRITE_COUNT = 4;
+
+    private final Bitmap[] mStrokeMasks = new Bitmap[SPRITE_COUNT];
+    private final Bitmap[] mShadowMasks = new Bitmap[SPRITE_COUNT];
+    /* Where the face center is, in mask coordinates. */
+    private final float[] mPivotX = new float[SPRITE_COUNT];
+    private final float[] mPivotY = new float[SPRITE_COUNT];
+    /* What each mask was baked for: inner and outer radius (circle: radius), stroke width. */
+    private final float[] mBakedInner = new float[SPRITE_COUNT];
+    private final float[] mBakedOuter = new float[SPRITE_COUNT];
+    private final float[] mBakedStroke = new float[SPRITE_COUNT];
+
+    private final Paint mSpritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Matrix mMatrix = new Matrix();
+    private final Canvas mBakeCanvas = new Canvas();
+
+    private float mShadowRadius;
+    private int mShadowColor;
+    private boolean mShadows = true;
+
+    HandSprites() {
+        invalidate();
+    }
+
+    /** Sets the shadow blur radius; re-bakes the masks only if it changed. */
+    void setShadowRadius(float radius) {
+        if (radius != mShadowRadius) {
+            mShadowRadius = radius;
+            invalidate();
+        }
+    }
+
+    /** Sets the shadow color, from the next draw on. */
+    void setShadowColor(int color) {
+        mShadowColor = color;
+    }
+
+    /** Turns the shadows off or back on; the masks stay baked either way. */
+    void setShadowsEnabled(boolean shadows) {
+        mShadows = shadows;
+    }
+
+    /** Re-bakes every mask on its next use. */
+    void invalidate() {
+        for (int i = 0; i < SPRITE_COUNT; i++) {
+            mBakedOuter[i] = -1;
+        }
+    }
+
+    /**
+     * Draws hand {@code hand} ({@code DrawingSurface.HAND_*}) like
+     * {@link DrawingSurface#drawHand}, in the color, stroke and alpha of {@code paint}.
+     */
+    void drawHand(Canvas canvas, int hand, Paint paint, float degrees, float centerX,
+            float centerY, float innerRadius, float outerRadius) {
+        if (mBakedOuter[hand] != outerRadius || mBakedInner[hand] != innerRadius
+                || mBakedStroke[hand] != paint.getStrokeWidth()) {
+            bakeHand(hand, paint, innerRadius, outerRadius);
+        }
+        mMatrix.setTranslate(centerX - mPivotX[hand], centerY - mPivotY[hand]);
+        mMatrix.postRotate(degrees, centerX, centerY);
+        drawMasks(canvas, hand, paint);
+    }
+
+    /** Draws the center circle like {@link DrawingSurface#drawCenterCircle}. */
+    void drawCircle(Canvas canvas, Paint paint, float centerX, float centerY, float radius) {
+        if (mBakedOuter[CIRCLE] != radius || mBakedStroke[CIRCLE] != paint.getStrokeWidth()) {
+            bakeCircle(paint, radius);
+        }
+        mMatrix.setTranslate(centerX - mPivotX[CIRCLE], centerY - mPivotY[CIRCLE]);
+        drawMasks(canvas, CIRCLE, paint);
+    }
+
+    /** Bytes held by the baked masks. */
+    int getAllocationByteCount() {
+        int bytes = 0;
+        for (int i = 0; i < SPRITE_COUNT; i++) {
+            bytes += MemoryMode.bytesOf(mStrokeMasks[i]) + MemoryMode.bytesOf(mShadowMasks[i]);
+        }
+        return bytes;
+    }
+
+    void release() {
+        for (int i = 0; i < SPRITE_COUNT; i++) {
+            recycle(mStrokeMasks, i);
+            recycle(mShadowMasks, i);
+        }
+        invalidate();
+    }
+
+    /* Shadow first, then the stroke on top, both faded by the paint's alpha. */
+    private void drawMasks(Canvas canvas, int sprite, Paint paint) {
+        if (mShadows) {
+            int alpha = paint.getAlpha();
+            mSpritePaint.setColor(mShadowColor);
+            mSpritePaint.setAlpha(Color.alpha(mShadowColor) * alpha / 255);
+            canvas.drawBitmap(mShadowMasks[sprite], mMatrix, mSpritePaint);
+        }
+        mSpritePaint.setColor(paint.getColor());
+        canvas.drawBitmap(mStrokeMasks[sprite], mMatrix, mSpritePaint);
+    }
+
+    /* The hand points up from the pivot, with room for the round caps and the shadow. */
+    private void bakeHand(int hand, Paint source, float innerRadius, float outerRadius) {
+        Paint paint = bakePaint(source);
+        float margin = margin(paint);
+        int width = (int) Math.ceil(2 * margin);
+        int height = (int) Math.ceil(outerRadius - innerRadius + 2 * margin);
+        float pivotX = width / 2f;
+        float pivotY = outerRadius + margin;
+
+        for (int pass = 0; pass < 2; pass++) {
+            Canvas canvas = beginBake(pass == 0 ? mStrokeMasks : mShadowMasks, hand, width,
+                    height, paint, pass == 1);
+            canvas.drawLine(pivotX, pivotY - innerRadius, pivotX, pivotY - outerRadius, paint);
+        }
+        endBake(hand, pivotX, pivotY, innerRadius, outerRadius, source.getStrokeWidth());
+    }
+
+    private void bakeCircle(Paint source, float radius) {
+        Paint paint = bakePaint(source);
+        float margin = margin(paint);
+        int size = (int) Math.ceil(2 * (radius + margin));
+        float pivot = size / 2f;
+
+        for (int pass = 0; pass < 2; pass++) {
+            Canvas canvas = beginBake(pass == 0 ? mStrokeMasks : mShadowMasks, CIRCLE, size,
+                    size, paint, pass == 1);
+            canvas.drawCircle(pivot, pivot, radius, paint);
+        }
+        endBake(CIRCLE, pivot, pivot, 0, radius, source.getStrokeWidth());
+    }
+
+    private Paint bakePaint(Paint source) {
+        Paint paint = new Paint(source);
+        paint.setColor(Color.WHITE);
+        paint.setAntiAlias(true);
+        paint.clearShadowLayer();
+        return paint;
+    }
+
+    /* Room around the stroke for its caps and the blur, plus a pixel for filtering. */
+    private float margin(Paint paint) {
+        return mShadowRadius + paint.getStrokeWidth() + 1;
+    }
+
+    private Canvas beginBake(Bitmap[] masks, int sprite, int width, int height, Paint paint,
+            boolean shadow) {
+        Bitmap bitmap = masks[sprite];
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            recycle(masks, sprite);
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            masks[sprite] = bitmap;
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        paint.setMaskFilter(shadow && mShadowRadius > 0
+                ? new BlurMaskFilter(mShadowRadius, BlurMaskFilter.Blur.NORMAL) : null);
+        mBakeCanvas.setBitmap(bitmap);
+        return mBakeCanvas;
+    }
+
+    private void endBake(int sprite, float pivotX, float pivotY, float inner, float outer,
+            float stroke) {
+        mBakeCanvas.setBitmap(null);
+        mPivotX[sprite] = pivotX;
+        mPivotY[sprite] = pivotY;
+        mBakedInner[sprite] = inner;
+        mBakedOuter[sprite] = outer;
+        mBakedStroke[sprite] = stroke;
+    }
+
+    private static void recycle(Bitmap[] bitmaps, int index) {
+        if (bitmaps[index] != null) {
+            bitmaps[index].recycle();
+            bitmaps[index] = null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.io.PrintWriter;
+
+/**
+ * Draws the engine's frames onto a hardware accelerated canvas of the watch face surface
+ * ({@link Surface#lockHardwareCanvas()}, API 23) instead of the software canvas
+ * {@code CanvasWatchFaceService} locks.
+ *
+ * <p>Once a surface has posted a hardware frame it can't take a software one any more. Nothing
+ * the face draws needs software (hand shadows come baked into {@link HandSprites}, no paint
+ * carries a mask filter or shadow layer), so the software path is only there for
+ * {@link #setCompareMode compare mode}: every other frame is then drawn in software into an
+ * offscreen bitmap and blitted onto the hardware canvas, so the frame stats show the cost of
+ * both paths side by side under the same load.
+ */
+@TargetApi(Build.VERSION_CODES.M)
+class HardwareCanvas {
+
+    private static final String TAG = "HardwareCanvas";
+
+    /** Draws one frame. */
+    interface Frame {
+        /** @param path {@code FrameStats.PATH_HARDWARE} or {@code PATH_SOFTWARE_FALLBACK} */
+        void draw(Canvas canvas, Rect bounds, int path);
+    }
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    private final SurfaceHolder mHolder;
+    private final Frame mFrame;
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mDrawRequested = false;
+            draw();
+        }
+    };
+    private boolean mDrawRequested;
+    private boolean mCompareMode;
+
+    /* Software fallback target, surface sized. */
+    private Bitmap mFallbackBitmap;
+    private final Canvas mFallbackCanvas = new Canvas();
+
+    private int mHardwareFrames;
+    private int mFallbackFrames;
+    private int mFailedFrames;
+
+    HardwareCanvas(SurfaceHolder holder, Frame frame) {
+        mHolder = holder;
+        mFrame = frame;
+    }
+
+    /** Alternates between the hardware and the fallback path, for comparing their cost. */
+    void setCompareMode(boolean compareMode) {
+        mCompareMode = compareMode;
+    }
+
+    /** Schedules a frame for the next vsync, like {@code Engine.invalidate()}. */
+    void invalidate() {
+        if (!mDrawRequested) {
+            mDrawRequested = true;
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /** Draws a frame right away. */
+    void draw() {
+        Surface surface = mHolder.getSurface();
+        if (surface == null || !surface.isValid()) {
+            return;
+        }
+        Rect bounds = mHolder.getSurfaceFrame();
+        boolean software = mCompareMode && (mHardwareFrames + mFallbackFrames) % 2 == 1;
+        Canvas canvas;
+        try {
+            canvas = surface.lockHardwareCanvas();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            mFailedFrames++;
+            Log.w(TAG, "Could not lock the hardware canvas", e);
+            return;
+        }
+        try {
+            if (software) {
+                Canvas fallback = beginFallback(bounds.width(), bounds.height());
+                mFrame.draw(fallback, bounds, FrameStats.PATH_SOFTWARE_FALLBACK);
+                canvas.drawBitmap(mFallbackBitmap, 0, 0, null);
+                mFallbackFrames++;
+            } else {
+                mFrame.draw(canvas, bounds, FrameStats.PATH_HARDWARE);
+                mHardwareFrames++;
+            }
+        } finally {
+            surface.unlockCanvasAndPost(canvas);
+        }
+    }
+
+    private Canvas beginFallback(int width, int height) {
+        if (mFallbackBitmap == null || mFallbackBitmap.getWidth() != width
+                || mFallbackBitmap.getHeight() != height) {
+            releaseFallback();
+            mFallbackBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mFallbackCanvas.setBitmap(mFallbackBitmap);
+        }
+        mFallbackCanvas.drawColor(Color.BLACK);
+        return mFallbackCanvas;
+    }
+
+    private void releaseFallback() {
+        mFallbackCanvas.setBitmap(null);
+        if (mFallbackBitmap != null) {
+            mFallbackBitmap.recycle();
+            mFallbackBitmap = null;
+        }
+    }
+
+    void release() {
+        if (mDrawRequested) {
+            mDrawRequested = false;
+            mChoreographer.removeFrameCallback(mFrameCallback);
+        }
+        releaseFallback();
+    }
+
+    /** Bytes held by the software fallback bitmap, 0 until a frame needed it. */
+    int getAllocationByteCount() {
+        return MemoryMode.bytesOf(mFallbackBitmap);
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("hardwareCanvas hardwareFrames=" + mHardwareFrames
+                + " fallbackFrames=" + mFallbackFrames + " failedFrames=" + mFailedFrames
+                + " compareMode=" + mCompareMode);
+    }
+}
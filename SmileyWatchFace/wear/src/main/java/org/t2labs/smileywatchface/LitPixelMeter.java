@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import java.io.PrintWriter;
+
+/**
+ * Share of the screen each ambient frame with burn-in protection lights, against a budget. The
+ * static layer is counted exactly, once per re-composite; what is drawn on top of it (hands,
+ * center circle, pupils) is estimated from its stroke area. Ambient frames come once a minute,
+ * so neither costs a frame anything noticeable.
+ */
+class LitPixelMeter {
+
+    /* Share of lit pixels above which a frame is over budget. */
+    static final float BUDGET_PERCENT = 15f;
+
+    private int[] mRow;
+    private int mLayerLitPixels;
+
+    private int mFrames;
+    private int mOverBudgetFrames;
+    private float mLastPercent;
+    private float mMaxPercent;
+
+    /** Counts the lit pixels of {@code layer}, {@code width} pixels wide, after a re-composite. */
+    void countLayer(StaticLayer layer, int width) {
+        if (mRow == null || mRow.length < width) {
+            mRow = new int[width];
+        }
+        mLayerLitPixels = layer.countLitPixels(mRow);
+    }
+
+    /**
+     * Records a frame of the last counted layer plus {@code overlayPixels} lit on top of it, on
+     * a surface of {@code surfacePixels}; returns whether it is over budget.
+     */
+    boolean addFrame(float overlayPixels, int surfacePixels) {
+        if (surfacePixels <= 0) {
+            return false;
+        }
+        mLastPercent = Math.min(100f, 100f * (mLayerLitPixels + overlayPixels) / surfacePixels);
+        mMaxPercent = Math.max(mMaxPercent, mLastPercent);
+        mFrames++;
+        boolean overBudget = mLastPercent > BUDGET_PERCENT;
+        if (overBudget) {
+            mOverBudgetFrames++;
+        }
+        return overBudget;
+    }
+
+    float getLastPercent() {
+        return mLastPercent;
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("litPixels frames=" + mFrames + " lastPercent=" + Math.round(mLastPercent)
+                + " maxPercent=" + Math.round(mMaxPercent) + " budgetPercent="
+                + Math.round(BUDGET_PERCENT) + " overBudgetFrames=" + mOverBudgetFrames);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+
+import org.t2labs.smileywatchface.render.AmbientFilters;
+
+/**
+ * Picks the {@link Bitmap.Config} of each class of face bitmap. The default mode keeps
+ * everything ARGB_8888. The compact mode takes the smallest config that draws the same on the
+ * black face: RGB_565 for the color backgrounds and the static layer, which are opaque once
+ * composited over black, and ALPHA_8 masks for the ambient versions, which are gray levels only.
+ */
+final class MemoryMode {
+
+    static final int ASSET_BACKGROUND = 0;
+    static final int ASSET_AMBIENT = 1;
+    static final int ASSET_STATIC_LAYER = 2;
+
+    private final boolean mCompact;
+
+    MemoryMode(boolean compact) {
+        mCompact = compact;
+    }
+
+    boolean isCompact() {
+        return mCompact;
+    }
+
+    Bitmap.Config configFor(int assetClass) {
+        if (!mCompact) {
+            return Bitmap.Config.ARGB_8888;
+        }
+        return assetClass == ASSET_AMBIENT ? Bitmap.Config.ALPHA_8 : Bitmap.Config.RGB_565;
+    }
+
+    /** Bytes held by {@code bitmap}'s pixels; 0 for null or recycled bitmaps. */
+    static int bytesOf(Bitmap bitmap) {
+        return bitmap == null || bitmap.isRecycled() ? 0 : bitmap.getAllocationByteCount();
+    }
+
+    static int bytesOf(Bitmap[] bitmaps) {
+        int bytes = 0;
+        for (Bitmap bitmap : bitmaps) {
+            bytes += bytesOf(bitmap);
+        }
+        return bytes;
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Returns {@code bitmap} in {@code config}: composited over black for RGB_565, as its
+     * luminance over black in the alpha channel for ALPHA_8. Recycles {@code bitmap} if it had to
+     * be converted.
+     */
+    static Bitmap convert(Bitmap bitmap, Bitmap.Config config) {
+        if (bitmap == null || bitmap.getConfig() == config) {
+            return bitmap;
+        }
+        Bitmap converted;
+        if (config == Bitmap.Config.ALPHA_8) {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            converted = createAlphaMask(pixels, width, height);
+        } else {
+            /* Pixels are premultiplied, so dropping alpha is compositing over black. */
+            converted = bitmap.copy(config, true);
+        }
+        if (converted == null) {
+            return bitmap;
+        }
+        bitmap.recycle();
+        return converted;
+    }
+
+    /**
+     * ALPHA_8 mask of the ARGB {@code pixels}, their luminance over black in the alpha channel.
+     * The alpha bytes are copied in raw: setPixels() on an ALPHA_8 bitmap leaves it blank on
+     * API 22 and 23.
+     */
+    static Bitmap createAlphaMask(int[] pixels, int width, int height) {
+        Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        byte[] alpha = new byte[mask.getRowBytes() * height];
+        AmbientFilters.alphaMask(pixels, width, height, mask.getRowBytes(), alpha);
+        mask.copyPixelsFromBuffer(ByteBuffer.wrap(alpha));
+        return mask;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Tiers of face bitmaps given up under memory pressure, from {@code onTrimMemory} levels. Each
+ * tier also drops everything the tiers below it drop:
+ * <ol>
+ * <li>{@link #TIER_ANIMATION}: the eye roll frames, only needed after a tap.
+ * <li>{@link #TIER_COLOR}: the color backgrounds as well, while in ambient mode.
+ * <li>{@link #TIER_MINIMUM}: everything but what draws black and stroked hands.
+ * </ol>
+ */
+final class MemoryTrim {
+
+    static final int TIER_NONE = 0;
+    static final int TIER_ANIMATION = 1;
+    static final int TIER_COLOR = 2;
+    static final int TIER_MINIMUM = 3;
+    static final int TIER_COUNT = 4;
+
+    private static final String[] TIER_NAMES = {"none", "animation", "color", "minimum"};
+
+    private MemoryTrim() {
+    }
+
+    /**
+     * Tier for a {@link ComponentCallbacks2} trim level. Levels of a running process map to the
+     * same tiers as the matching levels of a cached one; hiding the UI alone frees nothing.
+     */
+    static int tierFor(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            return TIER_MINIMUM;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return TIER_COLOR;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return TIER_ANIMATION;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return TIER_NONE;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return TIER_MINIMUM;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return TIER_COLOR;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return TIER_ANIMATION;
+        }
+        return TIER_NONE;
+    }
+
+    static String tierName(int tier) {
+        return TIER_NAMES[tier];
+    }
+}
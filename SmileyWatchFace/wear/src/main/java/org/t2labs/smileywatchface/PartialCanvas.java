@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.io.PrintWriter;
+
+/**
+ * Draws the engine's frames onto the software canvas of the watch face surface, locked only
+ * around the area that changed since the last frame ({@link SurfaceHolder#lockCanvas(Rect)}).
+ * The surface keeps the pixels outside that area from the previous frame, so a ticking second
+ * hand costs a blit of its own sweep instead of the whole face.
+ *
+ * <p>The surface may grow the locked area (always to the whole surface on the first frame and
+ * after buffers were reallocated); the canvas it returns is clipped to whatever it picked, and
+ * the frame is drawn in full under that clip.
+ */
+class PartialCanvas {
+
+    private static final String TAG = "PartialCanvas";
+
+    /** Draws one frame. */
+    interface Frame {
+        /**
+         * Gets the next frame ready (input, animation and time) and adds the area of the
+         * surface that changed since the last frame to {@code dirty}.
+         */
+        void prepare(Rect dirty);
+
+        void draw(Canvas canvas, Rect bounds);
+    }
+
+    private final SurfaceHolder mHolder;
+    private final Frame mFrame;
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mDrawRequested = false;
+            draw(false);
+        }
+    };
+    private boolean mDrawRequested;
+    private final Rect mDirty = new Rect();
+
+    private int mFullFrames;
+    private int mPartialFrames;
+    private int mSkippedFrames;
+    private int mFailedFrames;
+    /* Sum of the drawn fraction of the surface over all drawn frames, for the average. */
+    private double mDrawnFractionSum;
+
+    PartialCanvas(SurfaceHolder holder, Frame frame) {
+        mHolder = holder;
+        mFrame = frame;
+    }
+
+    /** Schedules a frame for the next vsync, like {@code Engine.invalidate()}. */
+    void invalidate() {
+        if (!mDrawRequested) {
+            mDrawRequested = true;
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * Draws a frame right away: only the changed area, or all of it with {@code full} (e.g.
+     * when the system asks for a redraw of the surface).
+     */
+    void draw(boolean full) {
+        Surface surface = mHolder.getSurface();
+        if (surface == null || !surface.isValid()) {
+            return;
+        }
+        Rect bounds = mHolder.getSurfaceFrame();
+        mDirty.setEmpty();
+        mFrame.prepare(mDirty);
+        if (full) {
+            mDirty.set(bounds);
+        } else if (!mDirty.intersect(bounds)) {
+            /* Nothing visible changed. */
+            mSkippedFrames++;
+            return;
+        }
+        Canvas canvas;
+        try {
+            canvas = mHolder.lockCanvas(mDirty);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            mFailedFrames++;
+            Log.w(TAG, "Could not lock the canvas", e);
+            return;
+        }
+        if (canvas == null) {
+            mFailedFrames++;
+            return;
+        }
+        try {
+            mFrame.draw(canvas, bounds);
+        } finally {
+            mHolder.unlockCanvasAndPost(canvas);
+        }
+        /* lockCanvas() grew mDirty to the area it actually let us draw. */
+        if (mDirty.contains(bounds)) {
+            mFullFrames++;
+        } else {
+            mPartialFrames++;
+        }
+        int area = bounds.width() * bounds.height();
+        if (area > 0) {
+            mDrawnFractionSum += mDirty.width() * mDirty.height() / (double) area;
+        }
+    }
+
+    void release() {
+        if (mDrawRequested) {
+            mDrawRequested = false;
+            mChoreographer.removeFrameCallback(mFrameCallback);
+        }
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        int drawn = mFullFrames + mPartialFrames;
+        writer.print(prefix);
+        writer.println("partialCanvas fullFrames=" + mFullFrames
+                + " partialFrames=" + mPartialFrames + " skippedFrames=" + mSkippedFrames
+                + " failedFrames=" + mFailedFrames + " avgDrawnPercent="
+                + (drawn > 0 ? Math.round(100 * mDrawnFractionSum / drawn) : 0));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import org.t2labs.smileywatchface.render.ProceduralSmiley;
+
+/**
+ * Draws the face base of the procedural smiley ({@link ProceduralSmiley}): face, eye whites and
+ * smile, without pupils. Takes the place of the smiley1..smiley5 frames as the single frame 0.
+ */
+final class ProceduralFace {
+
+    private ProceduralFace() {
+    }
+
+    /** Draws the face base scaled to {@code width}, square, on a transparent bitmap. */
+    static Bitmap createBase(int width) {
+        Bitmap bitmap = Bitmap.createBitmap(width, width, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        float scale = width / ProceduralSmiley.REFERENCE_SIZE;
+        canvas.scale(scale, scale);
+
+        Paint fill = new Paint(Paint.ANTI_ALIAS_FLAG);
+        Paint ink = new Paint(Paint.ANTI_ALIAS_FLAG);
+        ink.setColor(ProceduralSmiley.INK_COLOR);
+        ink.setStyle(Paint.Style.STROKE);
+
+        float center = ProceduralSmiley.FACE_CENTER;
+        fill.setColor(ProceduralSmiley.FACE_COLOR);
+        canvas.drawCircle(center, center, ProceduralSmiley.FACE_RADIUS, fill);
+        ink.setStrokeWidth(ProceduralSmiley.FACE_OUTLINE_WIDTH);
+        canvas.drawCircle(center, center, ProceduralSmiley.FACE_RADIUS, ink);
+
+        RectF oval = new RectF();
+        float eyeY = ProceduralSmiley.EYE_Y;
+        float eyeRadiusX = ProceduralSmiley.EYE_RADIUS_X;
+        float eyeRadiusY = ProceduralSmiley.EYE_RADIUS_Y;
+        fill.setColor(ProceduralSmiley.EYE_COLOR);
+        ink.setStrokeWidth(ProceduralSmiley.EYE_OUTLINE_WIDTH);
+        for (float eyeX : new float[] {ProceduralSmiley.EYE_LEFT_X, ProceduralSmiley.EYE_RIGHT_X}) {
+            oval.set(eyeX - eyeRadiusX, eyeY - eyeRadiusY, eyeX + eyeRadiusX, eyeY + eyeRadiusY);
+            canvas.drawOval(oval, fill);
+            canvas.drawOval(oval, ink);
+        }
+
+        float smileY = ProceduralSmiley.SMILE_CENTER_Y;
+        float smileRadius = ProceduralSmiley.SMILE_RADIUS;
+        ink.setStrokeWidth(ProceduralSmiley.SMILE_WIDTH);
+        ink.setStrokeCap(Paint.Cap.ROUND);
+        oval.set(center - smileRadius, smileY - smileRadius, center + smileRadius,
+                smileY + smileRadius);
+        canvas.drawArc(oval, ProceduralSmiley.SMILE_START_ANGLE,
+                ProceduralSmiley.SMILE_SWEEP_ANGLE, false, ink);
+        float size = ProceduralSmiley.REFERENCE_SIZE;
+        canvas.drawLine(ProceduralSmiley.DIMPLE_OUTER_X, ProceduralSmiley.DIMPLE_OUTER_Y,
+                ProceduralSmiley.DIMPLE_INNER_X, ProceduralSmiley.DIMPLE_INNER_Y, ink);
+        canvas.drawLine(size - ProceduralSmiley.DIMPLE_OUTER_X, ProceduralSmiley.DIMPLE_OUTER_Y,
+                size - ProceduralSmiley.DIMPLE_INNER_X, ProceduralSmiley.DIMPLE_INNER_Y, ink);
+        return bitmap;
+    }
+}
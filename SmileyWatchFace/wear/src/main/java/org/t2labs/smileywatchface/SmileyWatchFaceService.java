@@ -21,17 +21,20 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
+import android.os.BatteryManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.Region;
 import android.graphics.Typeface;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
+import android.os.Message;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
@@ -39,7 +42,23 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
-import java.util.Calendar;
+import org.t2labs.smileywatchface.render.Bounds;
+import org.t2labs.smileywatchface.render.ClockModel;
+import org.t2labs.smileywatchface.render.DrawingSurface;
+import org.t2labs.smileywatchface.render.FaceRenderer;
+import org.t2labs.smileywatchface.render.KeyframeAnimation;
+import org.t2labs.smileywatchface.render.PixelShift;
+import org.t2labs.smileywatchface.render.ProceduralSmiley;
+import org.t2labs.smileywatchface.render.RenderGovernor;
+import org.t2labs.smileywatchface.render.TapEventQueue;
+import org.t2labs.smileywatchface.render.TapGestureDetector;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -52,49 +71,149 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
     private static final String TAG = "SmileyWatchFaceService";
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Handler message id for updating the time periodically in interactive mode.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final int MSG_UPDATE_TIME = 0;
 
     /**
-     * Handler message id for updating the time periodically in interactive mode.
+     * Shortest delay in milliseconds between frames while the eyes are rolling. Only used for the
+     * length of the animation; the face drops back to the update interval of the render
+     * tier afterwards, once a second to advance the second hand.
      */
-    private static final int MSG_UPDATE_TIME = 0;
+    private static final long ANIMATION_UPDATE_RATE_MS = 16;
+
+    /** Background frames: smiley1 is the resting face, smiley2..smiley5 the eye roll. */
+    private static final int[] BACKGROUND_RESOURCES = {
+            R.drawable.smiley1,
+            R.drawable.smiley2,
+            R.drawable.smiley3,
+            R.drawable.smiley4,
+            R.drawable.smiley5
+    };
+
+    /* Cache key of the procedural face base, which takes the place of BACKGROUND_RESOURCES. */
+    private static final int[] PROCEDURAL_FACE_RESOURCES = {R.id.procedural_face};
+
+    /* Far more tap events than arrive between two frames; a power of two. */
+    private static final int TAP_QUEUE_CAPACITY = 64;
 
     private static final Typeface BOLD_TYPEFACE =
             Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD);
 
+    /* Live engines, for dump(). Only touched on the main thread. */
+    private final List<Engine> mEngines = new ArrayList<>();
+    /*
+     * Face bitmaps of all engines (the picker preview and the active face share one set per
+     * surface size). Created by the first engine and cleared when the last one is destroyed.
+     */
+    private BitmapCache mBitmapCache;
+    /* How often each MemoryTrim tier was asked for. */
+    private final int[] mTrimCounts = new int[MemoryTrim.TIER_COUNT];
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        trimMemory(MemoryTrim.tierFor(level));
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        trimMemory(MemoryTrim.TIER_MINIMUM);
+    }
+
+    /** Has every engine give up the bitmaps of {@code tier}, then frees the ones nobody holds. */
+    private void trimMemory(int tier) {
+        if (tier == MemoryTrim.TIER_NONE) {
+            return;
+        }
+        mTrimCounts[tier]++;
+        for (int i = 0; i < mEngines.size(); i++) {
+            mEngines.get(i).trimMemory(tier);
+        }
+        if (mBitmapCache != null) {
+            mBitmapCache.evictUnreferenced();
+        }
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        for (int i = 0; i < mEngines.size(); i++) {
+            writer.println("Engine #" + i + ":");
+            mEngines.get(i).dump(writer, "  ");
+        }
+        if (mBitmapCache != null) {
+            mBitmapCache.dump(writer, "");
+        }
+        writer.print("memoryTrims");
+        for (int tier = MemoryTrim.TIER_ANIMATION; tier < MemoryTrim.TIER_COUNT; tier++) {
+            writer.print(" " + MemoryTrim.tierName(tier) + "=" + mTrimCounts[tier]);
+        }
+        writer.println();
+        EventTrace.dump(writer);
+    }
+
+    /**
+     * Handler that drives frame updates. Holds the engine weakly so a pending message can't keep a
+     * destroyed engine alive.
+     */
+    private static class EngineHandler extends Handler {
+        private final WeakReference<SmileyWatchFaceService.Engine> mWeakReference;
+
+        public EngineHandler(SmileyWatchFaceService.Engine reference) {
+            mWeakReference = new WeakReference<>(reference);
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            SmileyWatchFaceService.Engine engine = mWeakReference.get();
+            if (engine != null) {
+                switch (msg.what) {
+                    case MSG_UPDATE_TIME:
+                        engine.handleUpdateTimeMessage();
+                        break;
+                }
+            }
+        }
+    }
+
     private class Engine extends CanvasWatchFaceService.Engine {
         private static final float HOUR_STROKE_WIDTH = 5f;
         private static final float MINUTE_STROKE_WIDTH = 3f;
         private static final float SECOND_TICK_STROKE_WIDTH = 2f;
 
-        private static final float CENTER_GAP_AND_CIRCLE_RADIUS = 4f;
-
         private static final int SHADOW_RADIUS = 6;
+        /* Room around the hand center lines for the widest stroke, its shadow and filtering. */
+        private static final float HAND_DIRTY_MARGIN = SHADOW_RADIUS + HOUR_STROKE_WIDTH + 2;
+
+        /* Hour and minute hands in ambient mode with burn-in protection. */
+        private static final float BURN_IN_HAND_STROKE_WIDTH = 2f;
+        /* The burn-in face moves up to this far on each axis, to a new offset every minute. */
+        private static final int PIXEL_SHIFT_PX = 3;
+        private static final long PIXEL_SHIFT_PERIOD_MS = TimeUnit.MINUTES.toMillis(1);
 
-        private Calendar mCalendar;
         private boolean mRegisteredTimeZoneReceiver = false;
         private boolean mMuteMode;
 
-        private float mCenterX;
-        private float mCenterY;
-
-        private float mSecondHandLength;
-        private float mMinuteHandLength;
-        private float mHourHandLength;
-
-        /* Colors for all hands (hour, minute, seconds, ticks) based on photo loaded. */
+        /* Colors for all hands (hour, minute, seconds, ticks) until the palette is known. */
         private int mWatchHandColor;
         private int mWatchHandHighlightColor;
         private int mWatchHandShadowColor;
 
+        /* Hand colors picked from each background frame, indexed like BACKGROUND_RESOURCES. */
+        private final int[] mFrameHandColors = new int[BACKGROUND_RESOURCES.length];
+        private final int[] mFrameHighlightColors = new int[BACKGROUND_RESOURCES.length];
+        private final int[] mFrameShadowColors = new int[BACKGROUND_RESOURCES.length];
+        /* Frame whose colors the hand paints have, -1 to recolor them on the next frame. */
+        private int mHandColorsFrame = -1;
+        private HandPalette mHandPalette;
+
 
         private Paint mHourPaint;
         private Paint mMinutePaint;
@@ -102,13 +221,34 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
         private Paint mTickAndCirclePaint;
 
         private Paint mBackgroundPaint;
-        private Bitmap mBackgroundBitmap;
-        private Bitmap mBackgroundBitmap2;
-        private Bitmap mBackgroundBitmap3;
-        private Bitmap mBackgroundBitmap4;
-        private Bitmap mBackgroundBitmap5;
-        boolean smiley2;
-        private Bitmap mGrayBackgroundBitmap;
+        /*
+         * BACKGROUND_RESOURCES, or PROCEDURAL_FACE_RESOURCES for the procedural face; the first
+         * frames of the background arrays below hold these.
+         */
+        private int[] mFaceResources = BACKGROUND_RESOURCES;
+        /* Decoded at surface size in onSurfaceChanged, indexed like BACKGROUND_RESOURCES. */
+        private final Bitmap[] mBackgroundBitmaps = new Bitmap[BACKGROUND_RESOURCES.length];
+        /* All versions of the backgrounds, indexed by DrawingSurface.VARIANT_*, then frame. */
+        private final Bitmap[][] mVariantBitmaps = new Bitmap[DrawingSurface.VARIANT_COUNT][];
+        /* Each bitmap in mVariantBitmaps holds a reference of the shared mBitmapCache. */
+        /* Loads the color frames missing from mBitmapCache off the main thread. */
+        private FramePreloader mPreloader;
+        /* Frames of mFaceResources not yet in mBackgroundBitmaps; taps wait until this is 0. */
+        private int mFramesPending;
+        /* MemoryTrim tier of the bitmaps given up, until the face is interactive again. */
+        private int mTrimTier = MemoryTrim.TIER_NONE;
+        private int mRestoreCount;
+        /* Preload timing, for dump(): uptime the engine was created at, and -1 until known. */
+        private long mCreatedUptimeMs;
+        private long mFirstFrameMs = -1;
+        private long mAllFramesMs = -1;
+        private FrameDiskCache mFrameDiskCache;
+        /* Builds the ambient version of the backgrounds in mVariantBitmaps off the main thread. */
+        private AmbientAssetPipeline mAmbientPipeline;
+        /* Bitmap config of each class of face bitmap. */
+        private MemoryMode mMemoryMode;
+        private int mSurfaceWidth;
+        private int mSurfaceHeight;
 
         private boolean mAmbient;
         private boolean mLowBitAmbient;
@@ -127,25 +267,212 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
         private int mTouchCoordinateX;
         private int mTouchCoordinateY;
 
-        //From Jono
-        int mOrientation = 0;
+        /*
+         * Tap events wait here until the next frame drains them through mTapGestures, so a burst
+         * of taps costs one invalidate and render state only changes between frames.
+         */
+        private final TapEventQueue mTapQueue = new TapEventQueue(TAP_QUEUE_CAPACITY);
+        private final TapGestureDetector mTapGestures =
+                new TapGestureDetector(new TapGestureDetector.Listener() {
+                    @Override
+                    public void onGesture(int gesture, int x, int y, long eventTimeMs) {
+                        onTapGesture(gesture, x, y);
+                    }
+                });
+        private final TapEventQueue.Consumer mTapConsumer = new TapEventQueue.Consumer() {
+            @Override
+            public void onTapEvent(int type, int x, int y, long eventTimeMs) {
+                countTapEvent(type, x, y);
+                mTapGestures.onTapEvent(type, x, y, eventTimeMs);
+            }
+        };
+        /* Whether an invalidate for queued taps is outstanding. */
+        private boolean mTapDrainPending;
+
+        /*
+         * Platform independent render logic (hands, background selection, eye roll, counters),
+         * drawn through mCanvasSurface. The eye roll runs on SystemClock.uptimeMillis().
+         */
+        private final FaceRenderer mRenderer = new FaceRenderer();
+        private final CanvasDrawingSurface mCanvasSurface = new CanvasDrawingSurface();
+        /* Hands with baked shadows for interactive mode; ambient mode strokes the paints. */
+        private final HandSprites mHandSprites = new HandSprites();
 
         private Rect mPeekCardBounds = new Rect();
 
+        /* Background frame and counters, re-composited only when one of them changes. */
+        private final StaticLayer mStaticLayer = new StaticLayer();
+        private int mStaticLayerBackground;
+
+        /* Single message scheduler for all frame updates (second ticks and animation frames). */
+        private final Handler mUpdateTimeHandler = new EngineHandler(this);
+        /* System.nanoTime() the pending MSG_UPDATE_TIME is due at. */
+        private long mScheduledFrameNanos;
+        /* System.nanoTime() the frame about to be drawn was due at, 0 if it wasn't scheduled. */
+        private long mExpectedFrameNanos;
+
+        private final FrameStats mFrameStats = new FrameStats();
+
+        /* Draws the frames on a hardware canvas instead, when enabled; null otherwise. */
+        private HardwareCanvas mHardwareCanvas;
+        /* FrameStats.PATH_* of the frame being drawn. */
+        private int mFramePath = FrameStats.PATH_SOFTWARE;
+        private final HardwareCanvas.Frame mHardwareFrame = new HardwareCanvas.Frame() {
+            @Override
+            public void draw(Canvas canvas, Rect bounds, int path) {
+                mFramePath = path;
+                onDraw(canvas, bounds);
+                mFramePath = FrameStats.PATH_SOFTWARE;
+            }
+        };
+
+        /* Otherwise redraws only what changed, when enabled; null for full frames. */
+        private PartialCanvas mPartialCanvas;
+        private final PartialCanvas.Frame mPartialFrame = new PartialCanvas.Frame() {
+            @Override
+            public void prepare(Rect dirty) {
+                prepareFrame();
+                unionFrameDirty(dirty);
+            }
+
+            @Override
+            public void draw(Canvas canvas, Rect bounds) {
+                onDraw(canvas, bounds);
+            }
+        };
+
+        /*
+         * State of the frame about to be drawn, set by prepareFrame(): taps are drained and the
+         * time is read once, before the changed area is known.
+         */
+        private boolean mFramePrepared;
+        private long mFrameStartNanos;
+        private long mFrameTimeMs;
+        private long mFrameUptimeMs;
+        private int mFrameBackground;
+
+        /* Hands of the frame being drawn and of the one before, padded for strokes. */
+        private final Bounds mHandBounds = new Bounds();
+        private final Bounds mLastHandBounds = new Bounds();
+        private final Bounds mDirtyBounds = new Bounds();
+        /* Whether the pupils moved in the last frame, so their last pose is cleared. */
+        private boolean mPupilsMoved;
+        /* Counter text, up to the right edge as the counts grow. */
+        private final Rect mCounterBounds = new Rect();
+        /* What the prepared frame changes, before the pixel shift. */
+        private final Rect mFrameDirty = new Rect();
+        /* Whether the next partial frame must cover the whole surface. */
+        private boolean mFullRedrawPending;
+
+        /*
+         * Burn-in protection moves the whole ambient frame by the pixel shift, a translate of the
+         * static layer and hands, and measures how much of the screen each frame lights.
+         */
+        private final PixelShift mPixelShift =
+                new PixelShift(PIXEL_SHIFT_PX, PIXEL_SHIFT_PERIOD_MS);
+        private int mShiftX;
+        private int mShiftY;
+        private final LitPixelMeter mLitPixels = new LitPixelMeter();
+
+        /* Scales rendering back with mute mode, peek cards, battery and temperature. */
+        private final RenderGovernor mGovernor = new RenderGovernor();
+        private PowerManager mPowerManager;
+
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.getClock().setTimeZone(TimeZone.getDefault());
                 invalidate();
             }
         };
 
+        /* Battery level, charger, temperature and power save mode, while visible. */
+        final BroadcastReceiver mPowerReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                    int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, 100);
+                    int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+                    boolean charging = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+                    mGovernor.setBattery(scale > 0 ? level * 100 / scale : 100, charging);
+                    mGovernor.setBatteryTemperature(
+                            intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0));
+                }
+                mGovernor.setPowerSaveMode(mPowerManager.isPowerSaveMode());
+                applyRenderTier();
+            }
+        };
+
+        /* Publishes ambient backgrounds as they are built; black is drawn until then. */
+        final AmbientAssetPipeline.Listener mAmbientListener = new AmbientAssetPipeline.Listener() {
+            @Override
+            public void onVariantReady(int frame, int variant, Bitmap bitmap) {
+                mBitmapCache.release(mVariantBitmaps[variant][frame]);
+                mVariantBitmaps[variant][frame] = share(frame, variant, bitmap);
+                if (mAmbient) {
+                    mStaticLayer.invalidate();
+                    invalidate();
+                }
+            }
+        };
+
+        /*
+         * Publishes color frames as they load, or marks them missing when they fail; drains the
+         * taps that waited for them.
+         */
+        final FramePreloader.Listener mPreloadListener = new FramePreloader.Listener() {
+            @Override
+            public void onFrameLoaded(int frame, Bitmap bitmap, long loadMs) {
+                mBitmapCache.release(mBackgroundBitmaps[frame]);
+                mBackgroundBitmaps[frame] = share(frame, DrawingSurface.VARIANT_COLOR, bitmap);
+                mRenderer.setFrameMissing(frame, false);
+                if (EventTrace.ENABLED) {
+                    EventTrace.record(EventTrace.EVENT_PRELOAD, frame, loadMs);
+                }
+                onFrameSettled();
+            }
+
+            /* The eye roll shows the resting face instead; nothing replaces frame 0 itself. */
+            @Override
+            public void onFrameFailed(int frame) {
+                Log.w(TAG, "Could not load face frame " + frame);
+                mRenderer.setFrameMissing(frame, true);
+                onFrameSettled();
+            }
+
+            private void onFrameSettled() {
+                mFramesPending--;
+                if (mFramesPending == 0) {
+                    onFramesLoaded();
+                }
+                mStaticLayer.invalidate();
+                invalidate();
+            }
+        };
+
+        /* Palette colors arrive per frame; recolor if they are for the frame on screen. */
+        final HandPalette.Listener mPaletteListener = new HandPalette.Listener() {
+            @Override
+            public void onColorsReady(int frame, int handColor, int highlightColor,
+                    int shadowColor) {
+                mFrameHandColors[frame] = handColor;
+                mFrameHighlightColors[frame] = highlightColor;
+                mFrameShadowColors[frame] = shadowColor;
+                if (frame == mHandColorsFrame) {
+                    mHandColorsFrame = -1;
+                    invalidate();
+                }
+            }
+        };
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "onCreate");
             }
             super.onCreate(holder);
+            mEngines.add(this);
+            mCreatedUptimeMs = SystemClock.uptimeMillis();
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(SmileyWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
@@ -158,12 +485,21 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(Color.BLACK);
 
-            mBackgroundBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.smiley1);
-            mBackgroundBitmap2 = BitmapFactory.decodeResource(getResources(), R.drawable.smiley2);
-            mBackgroundBitmap3 = BitmapFactory.decodeResource(getResources(), R.drawable.smiley3);
-            mBackgroundBitmap4 = BitmapFactory.decodeResource(getResources(), R.drawable.smiley4);
-            mBackgroundBitmap5 = BitmapFactory.decodeResource(getResources(), R.drawable.smiley5);
-            smiley2 = false;
+            /* Backgrounds are decoded once the surface size is known (onSurfaceChanged). */
+            if (mBitmapCache == null) {
+                mBitmapCache = new BitmapCache((int) (Runtime.getRuntime().maxMemory() / 8));
+            }
+            mFrameDiskCache = new FrameDiskCache(SmileyWatchFaceService.this);
+            mPreloader = new FramePreloader(getResources(), mFrameDiskCache, mUpdateTimeHandler,
+                    mPreloadListener);
+            mAmbientPipeline = new AmbientAssetPipeline(mFrameDiskCache, mUpdateTimeHandler,
+                    mAmbientListener);
+            mVariantBitmaps[DrawingSurface.VARIANT_COLOR] = mBackgroundBitmaps;
+            for (int variant = 1; variant < DrawingSurface.VARIANT_COUNT; variant++) {
+                mVariantBitmaps[variant] = new Bitmap[BACKGROUND_RESOURCES.length];
+            }
+
+            mPowerManager = (PowerManager) getSystemService(POWER_SERVICE);
 
             Resources resources = SmileyWatchFaceService.this.getResources();
             mTextSpacingHeight = resources.getDimension(R.dimen.interactive_text_size);
@@ -177,6 +513,9 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mWatchHandColor = Color.WHITE;
             mWatchHandHighlightColor = Color.BLUE;
             mWatchHandShadowColor = Color.WHITE;
+            Arrays.fill(mFrameHandColors, mWatchHandColor);
+            Arrays.fill(mFrameHighlightColors, mWatchHandHighlightColor);
+            Arrays.fill(mFrameShadowColors, mWatchHandShadowColor);
 
             /* Set parameters to draw Hour hand */
             mHourPaint = new Paint();
@@ -184,7 +523,6 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mHourPaint.setStrokeWidth(HOUR_STROKE_WIDTH);
             mHourPaint.setAntiAlias(true);
             mHourPaint.setStrokeCap(Paint.Cap.ROUND);
-            mHourPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
 
             /* Set parameters to draw Minute hand */
             mMinutePaint = new Paint();
@@ -192,7 +530,6 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mMinutePaint.setStrokeWidth(MINUTE_STROKE_WIDTH);
             mMinutePaint.setAntiAlias(true);
             mMinutePaint.setStrokeCap(Paint.Cap.ROUND);
-            mMinutePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
 
             /* Set parameters to draw Second hand */
             mSecondPaint = new Paint();
@@ -200,14 +537,19 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mSecondPaint.setStrokeWidth(SECOND_TICK_STROKE_WIDTH);
             mSecondPaint.setAntiAlias(true);
             mSecondPaint.setStrokeCap(Paint.Cap.ROUND);
-            mSecondPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
 
             mTickAndCirclePaint = new Paint();
             mTickAndCirclePaint.setColor(mWatchHandColor);
             mTickAndCirclePaint.setStrokeWidth(SECOND_TICK_STROKE_WIDTH);
             mTickAndCirclePaint.setAntiAlias(true);
             mTickAndCirclePaint.setStyle(Paint.Style.STROKE);
-            mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+
+            mCanvasSurface.setPaints(mHourPaint, mMinutePaint, mSecondPaint, mTickAndCirclePaint,
+                    mTextPaint);
+            /* Shadows are baked into the hand sprites instead of set on the paints. */
+            mHandSprites.setShadowRadius(SHADOW_RADIUS);
+            mCanvasSurface.setHandSprites(mHandSprites);
+            mCanvasSurface.setBackgrounds(mVariantBitmaps, mBackgroundPaint);
 
             mTouchCommandTotal = 0;
             mTouchCancelCommandTotal = 0;
@@ -216,26 +558,50 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mTouchCoordinateX = 0;
             mTouchCoordinateY = 0;
 
-            /* Extract colors from background image to improve watchface style. */
-        /*    Palette.generateAsync(
-                    mBackgroundBitmap,
-                    new Palette.PaletteAsyncListener() {
-                        @Override
-                        public void onGenerated(Palette palette) {
-                            if (palette != null) {
-                                if (Log.isLoggable(TAG, Log.DEBUG)) {
-                                    Log.d(TAG, "Palette: " + palette);
-                                }
-
-                                mWatchHandHighlightColor = palette.getVibrantColor(Color.BLUE);
-                                mWatchHandColor = palette.getLightVibrantColor(Color.WHITE);
-                                mWatchHandShadowColor = palette.getDarkMutedColor(Color.BLACK);
-                                updateWatchHandStyle();
-                            }
-                        }
-                    });
-                    */
-            mCalendar = Calendar.getInstance();
+            /* Extract colors from the background images to improve watchface style. */
+            mHandPalette = new HandPalette(SmileyWatchFaceService.this, mWatchHandColor,
+                    mWatchHandHighlightColor, mWatchHandShadowColor, mUpdateTimeHandler,
+                    mPaletteListener);
+            mHandPalette.load(BACKGROUND_RESOURCES);
+            mRenderer.setSmoothHands(resources.getBoolean(R.bool.smooth_hands));
+            mMemoryMode = new MemoryMode(resources.getBoolean(R.bool.compact_bitmaps));
+            if (resources.getBoolean(R.bool.procedural_face)) {
+                mRenderer.setFaceMode(FaceRenderer.FACE_PROCEDURAL);
+                mFaceResources = PROCEDURAL_FACE_RESOURCES;
+            }
+            if (resources.getBoolean(R.bool.hardware_canvas) && HardwareCanvas.isSupported()) {
+                mHardwareCanvas = new HardwareCanvas(holder, mHardwareFrame);
+                mHardwareCanvas.setCompareMode(
+                        resources.getBoolean(R.bool.hardware_canvas_compare));
+            } else if (resources.getBoolean(R.bool.partial_redraw)) {
+                mPartialCanvas = new PartialCanvas(holder, mPartialFrame);
+            }
+        }
+
+        @Override
+        public void onDestroy() {
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mPreloader.shutdown();
+            mAmbientPipeline.shutdown();
+            mHandPalette.shutdown();
+            mCanvasSurface.setBackgrounds(null, mBackgroundPaint);
+            for (Bitmap[] frames : mVariantBitmaps) {
+                mBitmapCache.releaseAll(frames);
+            }
+            mStaticLayer.release();
+            mHandSprites.release();
+            if (mHardwareCanvas != null) {
+                mHardwareCanvas.release();
+            }
+            if (mPartialCanvas != null) {
+                mPartialCanvas.release();
+            }
+            mEngines.remove(this);
+            if (mEngines.isEmpty()) {
+                mBitmapCache.clear();
+                mBitmapCache = null;
+            }
+            super.onDestroy();
         }
 
         @Override
@@ -246,6 +612,16 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             }
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            int ambientVariant = mRenderer.getAmbientVariant();
+            mRenderer.setLowBitAmbient(mLowBitAmbient);
+            mRenderer.setBurnInProtection(mBurnInProtection);
+            if (mAmbient) {
+                updateWatchHandStyle();
+            }
+            mStaticLayer.invalidate();
+            if (mRenderer.getAmbientVariant() != ambientVariant) {
+                requestAmbientBackgrounds();
+            }
         }
 
         @Override
@@ -257,14 +633,21 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onAmbientModeChanged: " + inAmbientMode);
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_AMBIENT, inAmbientMode ? 1 : 0, 0);
             }
             mAmbient = inAmbientMode;
+            mRenderer.setAmbient(inAmbientMode);
+            /* Frame timings are per mode; each stretch in a mode starts from scratch. */
+            mFrameStats.reset();
 
             updateWatchHandStyle();
+            updateTrimmedAssets();
+            mStaticLayer.invalidate();
 
             invalidate();
+            /* Check and trigger whether or not the timer should be running (only in active mode). */
+            updateTimer();
         }
 
         private void updateWatchHandStyle() {
@@ -273,73 +656,129 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
                 mMinutePaint.setColor(Color.WHITE);
                 mSecondPaint.setColor(Color.WHITE);
                 mTickAndCirclePaint.setColor(Color.WHITE);
+                applyMuteAlpha();
 
                 mHourPaint.setAntiAlias(false);
                 mMinutePaint.setAntiAlias(false);
                 mSecondPaint.setAntiAlias(false);
                 mTickAndCirclePaint.setAntiAlias(false);
 
-                mHourPaint.clearShadowLayer();
-                mMinutePaint.clearShadowLayer();
-                mSecondPaint.clearShadowLayer();
-                mTickAndCirclePaint.clearShadowLayer();
+                /* Thin hands light few pixels on screens prone to burn-in. */
+                mHourPaint.setStrokeWidth(mBurnInProtection
+                        ? BURN_IN_HAND_STROKE_WIDTH : HOUR_STROKE_WIDTH);
+                mMinutePaint.setStrokeWidth(mBurnInProtection
+                        ? BURN_IN_HAND_STROKE_WIDTH : MINUTE_STROKE_WIDTH);
 
+                /* Plain strokes, without shadows. */
+                mCanvasSurface.setHandSprites(null);
             } else {
-                mHourPaint.setColor(mWatchHandColor);
-                mMinutePaint.setColor(mWatchHandColor);
-                mSecondPaint.setColor(mWatchHandHighlightColor);
-                mTickAndCirclePaint.setColor(mWatchHandColor);
+                /* Colors of the frame on screen, set by the next onDraw. */
+                mHandColorsFrame = -1;
 
                 mHourPaint.setAntiAlias(true);
                 mMinutePaint.setAntiAlias(true);
                 mSecondPaint.setAntiAlias(true);
                 mTickAndCirclePaint.setAntiAlias(true);
 
-                mHourPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mMinutePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mSecondPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+                mHourPaint.setStrokeWidth(HOUR_STROKE_WIDTH);
+                mMinutePaint.setStrokeWidth(MINUTE_STROKE_WIDTH);
+
+                mCanvasSurface.setHandSprites(mHandSprites);
             }
         }
 
+        /**
+         * Colors the hands with the palette of background frame {@code frame}. Only touches
+         * paint colors; the hand sprites take them as they are drawn.
+         */
+        private void applyHandColors(int frame) {
+            mHandColorsFrame = frame;
+            mHourPaint.setColor(mFrameHandColors[frame]);
+            mMinutePaint.setColor(mFrameHandColors[frame]);
+            mSecondPaint.setColor(mFrameHighlightColors[frame]);
+            mTickAndCirclePaint.setColor(mFrameHandColors[frame]);
+            mHandSprites.setShadowColor(mFrameShadowColors[frame]);
+            applyMuteAlpha();
+        }
+
+        /* Dims the hands in mute mode; setColor() resets the alpha, so call after it. */
+        private void applyMuteAlpha() {
+            mHourPaint.setAlpha(mMuteMode ? 100 : 255);
+            mMinutePaint.setAlpha(mMuteMode ? 100 : 255);
+            mSecondPaint.setAlpha(mMuteMode ? 80 : 255);
+        }
+
         /*
-         * Captures tap event (and tap type) and increments correct tap type total.
+         * Queues the tap event for the next frame; see drainTapEvents().
          */
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "Tap Command: " + tapType);
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_TAP, tapType,
+                        ((long) x << 32) | (y & 0xffffffffL));
+            }
+            mTapQueue.offer(tapType, x, y, eventTime);
+            /* The taps wait for the trimmed frames, so bring them back. */
+            if (mTrimTier != MemoryTrim.TIER_NONE) {
+                restoreAssets();
             }
+            if (!mTapDrainPending) {
+                mTapDrainPending = true;
+                invalidate();
+            }
+        }
 
+        /**
+         * Runs the taps queued since the last frame through the gesture detector, then updates
+         * the counters and the frame timer once for all of them.
+         */
+        private void drainTapEvents() {
+            mTapDrainPending = false;
+            if (mTapQueue.drainTo(mTapConsumer) == 0) {
+                return;
+            }
+            if (mRenderer.setCounters(mTapCommandTotal, mTouchCancelCommandTotal)) {
+                mStaticLayer.invalidate(mCounterBounds);
+            }
+            updateTimer();
+        }
+
+        private void countTapEvent(int tapType, int x, int y) {
             mTouchCoordinateX = x;
             mTouchCoordinateY = y;
-
-            switch(tapType) {
+            switch (tapType) {
                 case TAP_TYPE_TOUCH:
                     mTouchCommandTotal++;
-                    // Tap to make eyes rotate
-                    if (smiley2) {
-                        smiley2 = false;
-                        Log.d(TAG, "Smiley: "+smiley2);
-                    }
-                    // Tap to step eyes rotating and display original image
-                    else {
-                        smiley2 = true;
-                        Log.d(TAG, "Smiley: "+smiley2);
-                    }
-                    Log.d(TAG, "TAP_TYPE_TOUCH detected");
                     break;
                 case TAP_TYPE_TOUCH_CANCEL:
                     mTouchCancelCommandTotal++;
-                    Log.d(TAG, "TAP_TYPE_TOUCH_CANCEL detected");
                     break;
                 case TAP_TYPE_TAP:
-                    //smiley2 = false;
                     mTapCommandTotal++;
-                    Log.d(TAG, "TAP_TYPE_TAP detected");
                     break;
             }
-            invalidate();
+        }
+
+        /**
+         * Tap to make the eyes rotate (a tap while they are rotating doesn't restart them),
+         * double tap to stop them and display the original image.
+         */
+        private void onTapGesture(int gesture, int x, int y) {
+            long now = SystemClock.uptimeMillis();
+            KeyframeAnimation eyeRoll = mRenderer.getEyeRoll();
+            if (gesture == TapGestureDetector.GESTURE_TAP) {
+                if (!eyeRoll.isRunning(now) && mGovernor.allowsAnimation()) {
+                    eyeRoll.start(now);
+                }
+            } else if (gesture == TapGestureDetector.GESTURE_DOUBLE_TAP) {
+                eyeRoll.stop();
+            }
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_GESTURE, gesture,
+                        ((long) x << 32) | (y & 0xffffffffL));
+                EventTrace.record(EventTrace.EVENT_EYE_ROLL,
+                        eyeRoll.isRunning(now) ? 1 : 0, eyeRoll.getTotalDurationMs());
+            }
         }
 
         @Override
@@ -350,267 +789,466 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             /* Dim display in mute mode. */
             if (mMuteMode != inMuteMode) {
                 mMuteMode = inMuteMode;
-                mHourPaint.setAlpha(inMuteMode ? 100 : 255);
-                mMinutePaint.setAlpha(inMuteMode ? 100 : 255);
-                mSecondPaint.setAlpha(inMuteMode ? 80 : 255);
+                applyMuteAlpha();
+                mStaticLayer.invalidate();
                 invalidate();
+                mGovernor.setMuteMode(inMuteMode);
+                applyRenderTier();
             }
         }
 
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-            if (Log.isLoggable(TAG, Log.VERBOSE)) {
-                Log.v(TAG, "onDraw");
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_SURFACE_CHANGED, width, height);
             }
             super.onSurfaceChanged(holder, format, width, height);
 
-            /*
-             * Find the coordinates of the center point on the screen, and ignore the window
-             * insets, so that, on round watches with a "chin", the watch face is centered on the
-             * entire screen, not just the usable portion.
-             */
-            mCenterX = width / 2f;
-            mCenterY = height / 2f;
+            /* Centers the face on the entire screen and sizes the hands to it. */
+            mRenderer.setSurfaceSize(width, height);
+
+            Bitmap.Config backgroundConfig =
+                    mMemoryMode.configFor(MemoryMode.ASSET_BACKGROUND);
+            Bitmap.Config ambientConfig = mMemoryMode.configFor(MemoryMode.ASSET_AMBIENT);
+            mStaticLayer.setSize(width, height,
+                    mMemoryMode.configFor(MemoryMode.ASSET_STATIC_LAYER));
+            mStaticLayer.invalidate();
 
             /*
-             * Calculate lengths of different hands based on watch screen size.
+             * Room for the color and ambient frames of this surface and of the previous one, so
+             * the frames in use are never evicted while the other size is still cached.
              */
-            mSecondHandLength = (float) (mCenterX * 0.875);
-            mMinuteHandLength = (float) (mCenterX * 0.75);
-            mHourHandLength = (float) (mCenterX * 0.5);
+            mBitmapCache.ensureBudget(2 * mFaceResources.length * width * height
+                    * (MemoryMode.bytesPerPixel(backgroundConfig)
+                    + MemoryMode.bytesPerPixel(ambientConfig)));
+
+            float faceScale = width / ProceduralSmiley.REFERENCE_SIZE;
+            mCanvasSurface.setPupilSize(ProceduralSmiley.PUPIL_RADIUS_X * faceScale,
+                    ProceduralSmiley.PUPIL_RADIUS_Y * faceScale,
+                    ProceduralSmiley.PUPIL_OUTLINE_WIDTH * faceScale);
+
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            updateCounterBounds();
+            /* The ambient pipeline may still be reading the old frames. */
+            mAmbientPipeline.cancel();
+            mBitmapCache.releaseAll(mBackgroundBitmaps);
+            loadFrames();
+        }
+
+        /**
+         * Takes the color frames missing from mBackgroundBitmaps from the bitmap cache; the
+         * preloader loads the rest, resting face first. Until it arrives the face is black.
+         */
+        private void loadFrames() {
+            Bitmap.Config config = mMemoryMode.configFor(MemoryMode.ASSET_BACKGROUND);
+            mPreloader.cancel();
+            boolean[] present = new boolean[mFaceResources.length];
+            mFramesPending = 0;
+            for (int i = 0; i < mFaceResources.length; i++) {
+                if (mBackgroundBitmaps[i] == null) {
+                    mBackgroundBitmaps[i] = mBitmapCache.get(mFaceResources[i], mSurfaceWidth,
+                            mSurfaceHeight, config, DrawingSurface.VARIANT_COLOR);
+                }
+                present[i] = mBackgroundBitmaps[i] != null;
+                mRenderer.setFrameMissing(i, false);
+                if (!present[i]) {
+                    mFramesPending++;
+                }
+            }
+            if (mFramesPending > 0) {
+                /* Only drops the ambient frames of the previous size for now. */
+                requestAmbientBackgrounds();
+                mPreloader.load(mFaceResources, present,
+                        mFaceResources == PROCEDURAL_FACE_RESOURCES, config, mSurfaceWidth,
+                        mSurfaceHeight);
+            } else {
+                onFramesLoaded();
+            }
+        }
 
+        /** Gives up the bitmaps of MemoryTrim tier {@code tier}, unless already at or above it. */
+        void trimMemory(int tier) {
+            if (tier > mTrimTier) {
+                mTrimTier = tier;
+                trimAssets();
+            }
+        }
 
-            /* Scale loaded background image (more efficient) if surface dimensions change. */
-            float scale = ((float) width) / (float) mBackgroundBitmap.getWidth();
-            Log.d(TAG, "(PRE) onSurfaceChanged: Scale: " + scale);
+        /**
+         * Releases what the trim tier drops in the current mode: the eye roll frames, then the
+         * color frames while in ambient mode, then all frames, the static layer and the hand
+         * sprites. Until they are restored, taps wait and the face is drawn black.
+         */
+        private void trimAssets() {
+            mPreloader.cancel();
+            mAmbientPipeline.cancel();
+            boolean minimum = mTrimTier >= MemoryTrim.TIER_MINIMUM;
+            for (int variant = 0; variant < DrawingSurface.VARIANT_COUNT; variant++) {
+                Bitmap[] frames = mVariantBitmaps[variant];
+                boolean dropAll = minimum || (variant == DrawingSurface.VARIANT_COLOR
+                        && mTrimTier >= MemoryTrim.TIER_COLOR && mAmbient);
+                for (int i = dropAll ? 0 : 1; i < frames.length; i++) {
+                    mBitmapCache.release(frames[i]);
+                    frames[i] = null;
+                }
+            }
+            if (minimum) {
+                mStaticLayer.release();
+                mCanvasSurface.setHandSprites(null);
+                mHandSprites.release();
+            }
+            mFramesPending = 0;
+            for (int i = 0; i < mFaceResources.length; i++) {
+                if (mBackgroundBitmaps[i] == null) {
+                    mFramesPending++;
+                }
+            }
+            mStaticLayer.invalidate();
+            mFullRedrawPending = true;
+            invalidate();
+        }
 
+        /**
+         * Trims further on entering ambient mode or hiding, and brings the trimmed bitmaps back,
+         * in the background, once the face is visible and interactive again.
+         */
+        private void updateTrimmedAssets() {
+            if (mTrimTier == MemoryTrim.TIER_NONE) {
+                return;
+            }
+            if (isVisible() && !mAmbient) {
+                restoreAssets();
+            } else {
+                trimAssets();
+            }
+        }
 
-            Log.d(TAG, "(PRE) onSurfaceChanged: BG: "+ mBackgroundBitmap.getWidth() + ", BG2: " +
-                    mBackgroundBitmap2.getWidth());
+        private void restoreAssets() {
+            mTrimTier = MemoryTrim.TIER_NONE;
+            mRestoreCount++;
+            if (mSurfaceWidth == 0) {
+                return;
+            }
+            mStaticLayer.setSize(mSurfaceWidth, mSurfaceHeight,
+                    mMemoryMode.configFor(MemoryMode.ASSET_STATIC_LAYER));
+            mStaticLayer.invalidate();
+            mCanvasSurface.setHandSprites(mAmbient ? null : mHandSprites);
+            loadFrames();
+            mFullRedrawPending = true;
+            invalidate();
+        }
 
-            mBackgroundBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                    (int) (mBackgroundBitmap.getWidth() * scale),
-                    (int) (mBackgroundBitmap.getHeight() * scale), true);
+        /**
+         * All color frames of the surface are loaded: derives their ambient version in the
+         * background and lets the taps that arrived meanwhile through on the next frame.
+         */
+        private void onFramesLoaded() {
+            if (mAllFramesMs < 0) {
+                mAllFramesMs = SystemClock.uptimeMillis() - mCreatedUptimeMs;
+            }
+            requestAmbientBackgrounds();
+            if (mTapDrainPending) {
+                invalidate();
+            }
+        }
 
-            mBackgroundBitmap2 = Bitmap.createScaledBitmap(mBackgroundBitmap2,
-                    (int) (mBackgroundBitmap2.getWidth() * scale),
-                    (int) (mBackgroundBitmap2.getHeight() * scale), true);
+        /**
+         * Picks up the ambient version of the backgrounds this screen uses (gray, low-bit or
+         * burn-in outline) for the current surface from the bitmap cache, and has the missing
+         * ones built in the background.
+         */
+        private void requestAmbientBackgrounds() {
+            mAmbientPipeline.cancel();
+            for (int variant = 1; variant < DrawingSurface.VARIANT_COUNT; variant++) {
+                mBitmapCache.releaseAll(mVariantBitmaps[variant]);
+            }
+            mStaticLayer.invalidate();
+            /* Asked for again once the color frames are loaded. */
+            if (mSurfaceWidth == 0 || mFramesPending > 0) {
+                return;
+            }
+            int variant = mRenderer.getAmbientVariant();
+            Bitmap.Config config = mMemoryMode.configFor(MemoryMode.ASSET_AMBIENT);
+            Bitmap[] missing = new Bitmap[mFaceResources.length];
+            boolean anyMissing = false;
+            for (int i = 0; i < mFaceResources.length; i++) {
+                Bitmap bitmap = mBitmapCache.get(mFaceResources[i], mSurfaceWidth,
+                        mSurfaceHeight, config, variant);
+                if (bitmap != null) {
+                    mVariantBitmaps[variant][i] = bitmap;
+                } else {
+                    missing[i] = mBackgroundBitmaps[i];
+                    anyMissing = true;
+                }
+            }
+            if (anyMissing) {
+                mAmbientPipeline.submit(mFaceResources, missing, variant, config,
+                        mSurfaceWidth, mSurfaceHeight);
+            }
+        }
 
-            mBackgroundBitmap3 = Bitmap.createScaledBitmap(mBackgroundBitmap3,
-                    (int) (mBackgroundBitmap3.getWidth() * scale),
-                    (int) (mBackgroundBitmap3.getHeight() * scale), true);
+        /*
+         * With the hardware canvas or partial redraws, every frame must go through them; see
+         * HardwareCanvas and PartialCanvas.
+         */
+        @Override
+        public void invalidate() {
+            if (mHardwareCanvas != null) {
+                mHardwareCanvas.invalidate();
+            } else if (mPartialCanvas != null) {
+                mPartialCanvas.invalidate();
+            } else {
+                super.invalidate();
+            }
+        }
 
-            mBackgroundBitmap4 = Bitmap.createScaledBitmap(mBackgroundBitmap4,
-                    (int) (mBackgroundBitmap4.getWidth() * scale),
-                    (int) (mBackgroundBitmap4.getHeight() * scale), true);
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            if (mHardwareCanvas != null) {
+                mHardwareCanvas.draw();
+            } else if (mPartialCanvas != null) {
+                mPartialCanvas.draw(true);
+            } else {
+                super.onSurfaceRedrawNeeded(holder);
+            }
+        }
 
-            mBackgroundBitmap5 = Bitmap.createScaledBitmap(mBackgroundBitmap5,
-                    (int) (mBackgroundBitmap5.getWidth() * scale),
-                    (int) (mBackgroundBitmap5.getHeight() * scale), true);
+        /**
+         * Gets the next frame ready: runs the queued taps, picks the background for the eye
+         * roll and reads the time. Called once per frame, before {@link #onDraw}.
+         */
+        private void prepareFrame() {
+            mFrameStartNanos = System.nanoTime();
+            mFrameTimeMs = System.currentTimeMillis();
 
-            Log.d(TAG, "onSurfaceChanged: BG: "+ mBackgroundBitmap.getWidth() + ", BG2: " +
-                    mBackgroundBitmap2.getWidth());
+            /* Taps stay queued until the eye roll frames they would start are loaded. */
+            if (mTapDrainPending && mFramesPending == 0) {
+                drainTapEvents();
+            }
 
-            /*
-             * Create a gray version of the image only if it will look nice on the device in
-             * ambient mode. That means we don't want devices that support burn-in
-             * protection (slight movements in pixels, not great for images going all the way to
-             * edges) and low ambient mode (degrades image quality).
-             *
-             * Also, if your watch face will know about all images ahead of time (users aren't
-             * selecting their own photos for the watch face), it will be more
-             * efficient to create a black/white version (png, etc.) and load that when you need it.
-             */
-            if (!mBurnInProtection && !mLowBitAmbient) {
-                initGrayBackgroundBitmap();
+            /* Shows the eye roll frame for the elapsed time, smiley1 when not rolling. */
+            mFrameUptimeMs = SystemClock.uptimeMillis();
+            mFrameBackground = mRenderer.getBackground(mFrameUptimeMs);
+            if (mFrameBackground != mStaticLayerBackground) {
+                mStaticLayerBackground = mFrameBackground;
+                mStaticLayer.invalidate();
+            }
+            mRenderer.setTime(mFrameTimeMs);
+
+            /* A new pixel shift moves everything, so the whole surface is redrawn. */
+            int shiftX = 0;
+            int shiftY = 0;
+            if (mAmbient && mBurnInProtection) {
+                mPixelShift.setTime(mFrameTimeMs);
+                shiftX = mPixelShift.getX();
+                shiftY = mPixelShift.getY();
+            }
+            if (shiftX != mShiftX || shiftY != mShiftY) {
+                mShiftX = shiftX;
+                mShiftY = shiftY;
+                mFullRedrawPending = true;
             }
+            mFramePrepared = true;
         }
 
-        private void initGrayBackgroundBitmap() {
-            mGrayBackgroundBitmap = Bitmap.createBitmap(
-                    mBackgroundBitmap.getWidth(),
-                    mBackgroundBitmap.getHeight(),
-                    Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(mGrayBackgroundBitmap);
-            Paint grayPaint = new Paint();
-            ColorMatrix colorMatrix = new ColorMatrix();
-            colorMatrix.setSaturation(0);
-            ColorMatrixColorFilter filter = new ColorMatrixColorFilter(colorMatrix);
-            grayPaint.setColorFilter(filter);
-            canvas.drawBitmap(mBackgroundBitmap, 0, 0, grayPaint);
+        /**
+         * Adds what the prepared frame changes on the surface to {@code dirty}: the re-composited
+         * part of the static layer, the old and new hands and, while they move, the pupils.
+         * Nothing is left to draw when the peek card covers all of it.
+         */
+        private void unionFrameDirty(Rect dirty) {
+            if (mFullRedrawPending) {
+                mFullRedrawPending = false;
+                dirty.union(0, 0, mSurfaceWidth, mSurfaceHeight);
+            }
+            mFrameDirty.setEmpty();
+            mStaticLayer.unionDirty(mFrameDirty);
+            mHandBounds.setEmpty();
+            mRenderer.unionHandBounds(mHandBounds);
+            mHandBounds.outset(HAND_DIRTY_MARGIN);
+            mDirtyBounds.set(mHandBounds);
+            mDirtyBounds.union(mLastHandBounds);
+            mLastHandBounds.set(mHandBounds);
+            boolean pupilsMoving = mRenderer.getEyeRoll().isRunning(mFrameUptimeMs);
+            if (pupilsMoving || mPupilsMoved) {
+                mRenderer.unionPupilBounds(mDirtyBounds);
+                mDirtyBounds.outset(1);
+            }
+            mPupilsMoved = pupilsMoving;
+            mFrameDirty.union((int) Math.floor(mDirtyBounds.left),
+                    (int) Math.floor(mDirtyBounds.top), (int) Math.ceil(mDirtyBounds.right),
+                    (int) Math.ceil(mDirtyBounds.bottom));
+            mFrameDirty.offset(mShiftX, mShiftY);
+            dirty.union(mFrameDirty);
+            if (mPeekCardBounds.contains(dirty)) {
+                dirty.setEmpty();
+            }
         }
 
+        /* Counter text area; call when the text layout or the surface width changed. */
+        private void updateCounterBounds() {
+            mCounterBounds.set((int) Math.floor(mXOffset),
+                    (int) Math.floor(mYOffset - mTextPaint.getTextSize()),
+                    mSurfaceWidth,
+                    (int) Math.ceil(mYOffset + mTextSpacingHeight + mTextPaint.descent()));
+        }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            if (Log.isLoggable(TAG, Log.VERBOSE)) {
-                Log.v(TAG, "onDraw");
+            if (!mFramePrepared) {
+                prepareFrame();
             }
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-
-            // Reflects taps
-            canvas.drawText(
-                    "TAP: " + String.valueOf(mTapCommandTotal),
-                    mXOffset,
-                    mYOffset,
-                    mTextPaint);
-
-            canvas.drawText(
-                    "CANCEL: " + String.valueOf(mTouchCancelCommandTotal),
-                    mXOffset,
-                    mYOffset + mTextSpacingHeight,
-                    mTextPaint);
-
-
-            if (mAmbient && (mLowBitAmbient || mBurnInProtection)) {
-                canvas.drawColor(Color.BLACK);
-            } else if (mAmbient) {
-                canvas.drawBitmap(mGrayBackgroundBitmap, 0, 0, mBackgroundPaint);
-            } else if (smiley2) {
-                Log.d(TAG, "Value of smiley(isInteractive): "+ smiley2);
-                /* Loop through all images to show eyes circling */
-                //changeBackgroundImage(canvas);
-
-                // New approach from Jono
-                // Draw images in order of eyes rotating in a circle
-                if (mOrientation < 50) {
-                    Log.d(TAG, "Orientation: "+mOrientation);
-                    canvas.drawBitmap(mBackgroundBitmap2, 0, 0, mBackgroundPaint);
-                    mOrientation+=5;
-                    Log.d(TAG, "Orientation: "+mOrientation);
-                }
-                else if (mOrientation >= 50 && mOrientation < 100) {
-                    Log.d(TAG, "Orientation: "+mOrientation);
-                    canvas.drawBitmap(mBackgroundBitmap3, 0, 0, mBackgroundPaint);
-                    mOrientation+=5;
-                }
-                else if (mOrientation >= 100 && mOrientation < 150) {
-                    Log.d(TAG, "Orientation: "+mOrientation);
-                    canvas.drawBitmap(mBackgroundBitmap4, 0, 0, mBackgroundPaint);
-                    mOrientation+=5;
-                }
-                else if (mOrientation >= 150 && mOrientation < 200) {
-                    Log.d(TAG, "Orientation: "+mOrientation);
-                    canvas.drawBitmap(mBackgroundBitmap5, 0, 0, mBackgroundPaint);
-                    mOrientation+=5;
-                }
-                else {
-                    // Reset
-                    smiley2 = false;
-                    Log.d(TAG, "Orientation: "+mOrientation);
-                    canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
-                }
-
-                int delayLength;
-                switch(mOrientation) {
-                    case 0:
-                        delayLength = 50;
-                        Log.d(TAG, "Delay:"+delayLength);
-                        break;
-                    case 50:
-                        delayLength = 50;
-                        Log.d(TAG, "Delay:"+delayLength);
-                        break;
-                    case 100:
-                        delayLength = 50;
-                        Log.d(TAG, "Delay:"+delayLength);
-                        break;
-                    case 150:
-                        delayLength = 50;
-                        Log.d(TAG, "Delay: "+delayLength);
-                        break;
-                    default:
-                        delayLength = 5;
-                        break;
+            mFramePrepared = false;
+            long frameStartNanos = mFrameStartNanos;
+            long uptimeMs = mFrameUptimeMs;
+            int background = mFrameBackground;
+            if (mFirstFrameMs < 0 && hasBackground(background)) {
+                mFirstFrameMs = uptimeMs - mCreatedUptimeMs;
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Time to first frame: " + mFirstFrameMs + " ms");
                 }
-                new Handler().postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        Log.d(TAG, "Runnable working...");
-                        invalidate();
-                    }
-                }, delayLength);
-
-            } else {
-                Log.d(TAG, "Reset");
-                canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
-                mOrientation = 0;
             }
-
-            /*
-             * These calculations reflect the rotation in degrees per unit of time, e.g.,
-             * 360 / 60 = 6 and 360 / 12 = 30.
-             */
-            final float seconds =
-                    (mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f);
-            final float secondsRotation = seconds * 6f;
-
-            final float minutesRotation = mCalendar.get(Calendar.MINUTE) * 6f;
-
-            final float hourHandOffset = mCalendar.get(Calendar.MINUTE) / 2f;
-            final float hoursRotation = (mCalendar.get(Calendar.HOUR) * 30) + hourHandOffset;
-
-
+            boolean eyeRoll = mRenderer.getEyeRoll().isRunning(uptimeMs);
+            mFrameStats.beginFrame(mAmbient ? FrameStats.MODE_AMBIENT
+                    : eyeRoll ? FrameStats.MODE_EYE_ROLL : FrameStats.MODE_INTERACTIVE,
+                    mFramePath, frameStartNanos, mExpectedFrameNanos);
+            mExpectedFrameNanos = 0;
+
+            long phaseStartNanos = System.nanoTime();
+            long textNanos = 0;
+            boolean layerRebuilt = false;
+            if (mStaticLayer.needsRebuild()) {
+                textNanos = drawStaticLayer(mStaticLayer.beginRebuild(), background);
+                mStaticLayer.endRebuild();
+                layerRebuilt = true;
+            }
+            /* Nothing under the peek card is visible, so nothing is drawn there. */
+            canvas.save();
+            canvas.clipRect(mPeekCardBounds, Region.Op.DIFFERENCE);
             /*
-             * Save the canvas state before we can begin to rotate it.
+             * The pixel shift, 0 unless burn-in protection is on in ambient mode. The shifted
+             * layer leaves strips along two edges uncovered, which would keep the last frame.
              */
-            canvas.save();
+            if (mShiftX != 0 || mShiftY != 0) {
+                canvas.drawColor(Color.BLACK);
+            }
+            canvas.translate(mShiftX, mShiftY);
+            mStaticLayer.draw(canvas, mBackgroundPaint);
+            mCanvasSurface.setCanvas(canvas);
+            mRenderer.drawPupils(mCanvasSurface, uptimeMs);
+            mFrameStats.addPhase(FrameStats.PHASE_BACKGROUND,
+                    System.nanoTime() - phaseStartNanos - textNanos);
+            if (textNanos != 0) {
+                mFrameStats.addPhase(FrameStats.PHASE_TEXT, textNanos);
+            }
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_DRAW, background, mAmbient ? 1 : 0);
+            }
 
-            canvas.rotate(hoursRotation, mCenterX, mCenterY);
-            canvas.drawLine(
-                    mCenterX,
-                    mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                    mCenterX,
-                    mCenterY - mHourHandLength,
-                    mHourPaint);
-
-            canvas.rotate(minutesRotation - hoursRotation, mCenterX, mCenterY);
-            canvas.drawLine(
-                    mCenterX,
-                    mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                    mCenterX,
-                    mCenterY - mMinuteHandLength,
-                    mMinutePaint);
+            /* Palette and lit pixel work stay out of the phases, which only time drawing. */
+            int frame = FaceRenderer.backgroundFrame(background);
+            if (!mAmbient && frame >= 0 && frame != mHandColorsFrame) {
+                applyHandColors(frame);
+            }
+            long handsStartNanos = System.nanoTime();
+            mRenderer.drawHands(mCanvasSurface);
+            mFrameStats.addPhase(FrameStats.PHASE_HANDS, System.nanoTime() - handsStartNanos);
+            canvas.restore();
 
             /*
-             * Ensure the "seconds" hand is drawn only when we are in interactive mode.
-             * Otherwise, we only update the watch face once a minute.
+             * Draw rectangle behind peek card in ambient mode to improve readability. The
+             * interactive card is opaque.
              */
-            if (!mAmbient) {
-                canvas.rotate(secondsRotation - minutesRotation, mCenterX, mCenterY);
-                canvas.drawLine(
-                        mCenterX,
-                        mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                        mCenterX,
-                        mCenterY - mSecondHandLength,
-                        mSecondPaint);
-
-            }
-            canvas.drawCircle(
-                    mCenterX,
-                    mCenterY,
-                    CENTER_GAP_AND_CIRCLE_RADIUS,
-                    mTickAndCirclePaint);
-
-            /* Restore the canvas' original orientation. */
-            canvas.restore();
-
-            /* Draw rectangle behind peek card in ambient mode to improve readability. */
             if (mAmbient) {
                 canvas.drawRect(mPeekCardBounds, mBackgroundPaint);
             }
+            if (mAmbient && mBurnInProtection) {
+                if (layerRebuilt) {
+                    mLitPixels.countLayer(mStaticLayer, mSurfaceWidth);
+                }
+                measureLitPixels();
+            }
 
-            /* Draw every frame as long as we're visible and in interactive mode. */
-            if ((isVisible()) && (!mAmbient)) {
-                invalidate();
+            mFrameStats.endFrame(System.nanoTime());
+        }
+
+        /*
+         * Returns the bitmap another engine cached for this frame meanwhile, recycling
+         * {@code bitmap}, else caches {@code bitmap}. Either way the engine holds a reference.
+         */
+        private Bitmap share(int frame, int variant, Bitmap bitmap) {
+            Bitmap cached = mBitmapCache.get(mFaceResources[frame], mSurfaceWidth, mSurfaceHeight,
+                    bitmap.getConfig(), variant);
+            if (cached != null) {
+                bitmap.recycle();
+                return cached;
+            }
+            mBitmapCache.put(mFaceResources[frame], mSurfaceWidth, mSurfaceHeight,
+                    bitmap.getConfig(), variant, bitmap);
+            return bitmap;
+        }
+
+        /*
+         * Adds the frame just drawn to the lit pixel meter: the counted static layer plus the
+         * stroke area of the hands, the center circle and, on the procedural face, the pupil
+         * outlines at rest.
+         */
+        private void measureLitPixels() {
+            float overlay = strokeArea(DrawingSurface.HAND_HOUR, mHourPaint)
+                    + strokeArea(DrawingSurface.HAND_MINUTE, mMinutePaint)
+                    + (float) (2 * Math.PI * FaceRenderer.CENTER_GAP_AND_CIRCLE_RADIUS)
+                    * mTickAndCirclePaint.getStrokeWidth();
+            if (mRenderer.getFaceMode() == FaceRenderer.FACE_PROCEDURAL) {
+                float faceScale = mSurfaceWidth / ProceduralSmiley.REFERENCE_SIZE;
+                double radius = Math.sqrt((ProceduralSmiley.PUPIL_RADIUS_X
+                        * ProceduralSmiley.PUPIL_RADIUS_X + ProceduralSmiley.PUPIL_RADIUS_Y
+                        * ProceduralSmiley.PUPIL_RADIUS_Y) / 2);
+                overlay += (float) (2 * 2 * Math.PI * radius
+                        * ProceduralSmiley.PUPIL_OUTLINE_WIDTH) * faceScale * faceScale;
             }
+            if (mLitPixels.addFrame(overlay, mSurfaceWidth * mSurfaceHeight)
+                    && Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Ambient frame lights " + mLitPixels.getLastPercent()
+                        + "% of the screen, over the budget of "
+                        + LitPixelMeter.BUDGET_PERCENT + "%");
+            }
+        }
+
+        private float strokeArea(int hand, Paint paint) {
+            return (mRenderer.getHandLength(hand) - FaceRenderer.CENTER_GAP_AND_CIRCLE_RADIUS)
+                    * paint.getStrokeWidth();
+        }
+
+        /* Whether the bitmap of the background is loaded, rather than drawn as black. */
+        private boolean hasBackground(int background) {
+            int frame = FaceRenderer.backgroundFrame(background);
+            return frame >= 0
+                    && mVariantBitmaps[FaceRenderer.backgroundVariant(background)][frame] != null;
+        }
 
+        /**
+         * Composites everything that only changes on input (taps, ambient and mute changes, a new
+         * surface, the next eye roll frame) into the static layer: background plus counters.
+         *
+         * @return time spent drawing the counters, in nanoseconds
+         */
+        private long drawStaticLayer(Canvas canvas, int background) {
+            mCanvasSurface.setCanvas(canvas);
+            canvas.clipRect(mPeekCardBounds, Region.Op.DIFFERENCE);
+            if (background != DrawingSurface.BACKGROUND_BLACK) {
+                mRenderer.drawBackground(mCanvasSurface, background);
+            }
+            if (!mRenderer.hasCounters()) {
+                return 0;
+            }
+            long textStartNanos = System.nanoTime();
+            mRenderer.drawCounters(mCanvasSurface);
+            return System.nanoTime() - textStartNanos;
         }
 
         public void changeBackgroundImage(Canvas canvas) {
-            Bitmap [] myImages = {mBackgroundBitmap, mBackgroundBitmap2, mBackgroundBitmap3,
-            mBackgroundBitmap4, mBackgroundBitmap5};
+            Bitmap [] myImages = mBackgroundBitmaps;
 
             // Randomly draw images
 //            Random ran = new Random();
@@ -620,7 +1258,6 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
 
             // Draw images in order of eyes rotating in a circle
             for (int i = 0; i < myImages.length; i++) {
-                Log.d(TAG, "Int:"+i);
                 canvas.drawBitmap(myImages[i], 0, 0, mBackgroundPaint);
             }
         }
@@ -628,15 +1265,23 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_VISIBILITY, visible ? 1 : 0, 0);
+            }
 
             if (visible) {
                 registerReceiver();
+                mFrameStats.reset();
                 /* Update time zone in case it changed while we weren't visible. */
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.getClock().setTimeZone(TimeZone.getDefault());
                 invalidate();
             } else {
                 unregisterReceiver();
             }
+            updateTrimmedAssets();
+
+            /* Check and trigger whether or not the timer should be running (only in active mode). */
+            updateTimer();
         }
 
         @Override
@@ -658,12 +1303,47 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
                     isRound ? R.dimen.interactive_text_size_round : R.dimen.interactive_text_size);
 
             mTextPaint.setTextSize(textSize);
+            mRenderer.setTextLayout(mXOffset, mYOffset, mTextSpacingHeight);
+            updateCounterBounds();
+            mStaticLayer.invalidate();
         }
 
         @Override
         public void onPeekCardPositionUpdate(Rect rect) {
             super.onPeekCardPositionUpdate(rect);
+            /* What the card covered was never drawn; recomposite and redraw all of it. */
             mPeekCardBounds.set(rect);
+            mStaticLayer.invalidate();
+            invalidate();
+            int surfaceArea = mSurfaceWidth * mSurfaceHeight;
+            mGovernor.setPeekCardCoverage(surfaceArea > 0
+                    ? rect.width() * rect.height() / (float) surfaceArea : 0);
+            applyRenderTier();
+        }
+
+        /**
+         * Re-evaluates the render tier and, when it changed, applies it to the hands, the eye roll
+         * and the frame timer.
+         */
+        private void applyRenderTier() {
+            if (!mGovernor.evaluate(SystemClock.uptimeMillis())) {
+                return;
+            }
+            int tier = mGovernor.getTier();
+            if (EventTrace.ENABLED) {
+                EventTrace.record(EventTrace.EVENT_RENDER_TIER, tier, mGovernor.getReasons());
+            }
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Render tier " + RenderGovernor.tierName(tier) + ", reasons 0x"
+                        + Integer.toHexString(mGovernor.getReasons()));
+            }
+            mRenderer.setSecondHand(mGovernor.showsSecondHand());
+            mHandSprites.setShadowsEnabled(mGovernor.showsShadows());
+            if (!mGovernor.allowsAnimation()) {
+                mRenderer.getEyeRoll().stop();
+            }
+            invalidate();
+            updateTimer();
         }
 
         private void registerReceiver() {
@@ -673,6 +1353,10 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             SmileyWatchFaceService.this.registerReceiver(mTimeZoneReceiver, filter);
+            /* The battery broadcast is sticky, so the current state arrives right away. */
+            IntentFilter powerFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+            powerFilter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+            SmileyWatchFaceService.this.registerReceiver(mPowerReceiver, powerFilter);
         }
 
         private void unregisterReceiver() {
@@ -681,6 +1365,138 @@ public class SmileyWatchFaceService extends CanvasWatchFaceService {
             }
             mRegisteredTimeZoneReceiver = false;
             SmileyWatchFaceService.this.unregisterReceiver(mTimeZoneReceiver);
+            SmileyWatchFaceService.this.unregisterReceiver(mPowerReceiver);
+        }
+
+        /**
+         * Starts/stops the {@link #mUpdateTimeHandler} timer based on the state of the watch face.
+         */
+        private void updateTimer() {
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            if (shouldTimerBeRunning()) {
+                long delayMs = nextFrameDelayMs();
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                mScheduledFrameNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            }
+        }
+
+        void dump(PrintWriter writer, String prefix) {
+            writer.print(prefix);
+            writer.println("ambient=" + mAmbient + " lowBitAmbient=" + mLowBitAmbient
+                    + " burnInProtection=" + mBurnInProtection + " muteMode=" + mMuteMode
+                    + " visible=" + isVisible());
+            ClockModel clock = mRenderer.getClock();
+            writer.print(prefix);
+            writer.println("timeZone=" + clock.getTimeZone().getID()
+                    + " offsetMs=" + clock.getOffsetMs()
+                    + " offsetValidUntilMs=" + clock.getOffsetValidUntilMs()
+                    + " offsetLookups=" + clock.getOffsetLookups());
+            writer.print(prefix);
+            writer.println("trimTier=" + MemoryTrim.tierName(mTrimTier)
+                    + " restores=" + mRestoreCount);
+            writer.print(prefix);
+            writer.println("preload framesPending=" + mFramesPending
+                    + " timeToFirstFrameMs=" + mFirstFrameMs
+                    + " timeToAllFramesMs=" + mAllFramesMs);
+            writer.print(prefix);
+            writer.println("touches=" + mTouchCommandTotal + " taps=" + mTapCommandTotal
+                    + " cancels=" + mTouchCancelCommandTotal
+                    + " droppedTapEvents=" + mTapQueue.getDroppedCount());
+            long uptimeMs = SystemClock.uptimeMillis();
+            writer.print(prefix);
+            writer.print("renderTier=" + RenderGovernor.tierName(mGovernor.getTier())
+                    + " reasons=0x" + Integer.toHexString(mGovernor.getReasons())
+                    + " tierSwitches=" + mGovernor.getSwitchCount() + " timeInTierMs=");
+            for (int tier = 0; tier < RenderGovernor.TIER_COUNT; tier++) {
+                writer.print((tier > 0 ? "," : "") + RenderGovernor.tierName(tier) + ":"
+                        + mGovernor.getTimeInTierMs(tier, uptimeMs));
+            }
+            writer.println();
+            dumpMemory(writer, prefix);
+            if (mHardwareCanvas != null) {
+                mHardwareCanvas.dump(writer, prefix);
+            }
+            if (mPartialCanvas != null) {
+                mPartialCanvas.dump(writer, prefix);
+            }
+            writer.print(prefix);
+            writer.println("pixelShift x=" + mShiftX + " y=" + mShiftY);
+            mLitPixels.dump(writer, prefix);
+            mFrameStats.dump(writer, prefix);
+        }
+
+        /**
+         * Bytes held per asset class in the configs of the memory mode, and the process heaps.
+         * Bitmap pixels count towards the Java heap on these API levels.
+         */
+        private void dumpMemory(PrintWriter writer, String prefix) {
+            writer.print(prefix);
+            writer.println("memoryMode=" + (mMemoryMode.isCompact() ? "compact" : "default")
+                    + " background="
+                    + mMemoryMode.configFor(MemoryMode.ASSET_BACKGROUND).name()
+                    + " ambient=" + mMemoryMode.configFor(MemoryMode.ASSET_AMBIENT).name()
+                    + " staticLayer="
+                    + mMemoryMode.configFor(MemoryMode.ASSET_STATIC_LAYER).name());
+            writer.print(prefix);
+            int ambientBytes = 0;
+            for (int variant = 1; variant < DrawingSurface.VARIANT_COUNT; variant++) {
+                ambientBytes += MemoryMode.bytesOf(mVariantBitmaps[variant]);
+            }
+            writer.println("assetBytes backgrounds=" + MemoryMode.bytesOf(mBackgroundBitmaps)
+                    + " ambient=" + ambientBytes
+                    + " staticLayer=" + mStaticLayer.getAllocationByteCount()
+                    + " handSprites=" + mHandSprites.getAllocationByteCount()
+                    + " hardwareFallback=" + (mHardwareCanvas != null
+                    ? mHardwareCanvas.getAllocationByteCount() : 0));
+            Runtime runtime = Runtime.getRuntime();
+            writer.print(prefix);
+            writer.println("heap javaUsed=" + (runtime.totalMemory() - runtime.freeMemory())
+                    + " javaMax=" + runtime.maxMemory()
+                    + " nativeAllocated=" + Debug.getNativeHeapAllocatedSize());
+        }
+
+        /**
+         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
+         * should only run in active mode.
+         */
+        private boolean shouldTimerBeRunning() {
+            return isVisible() && !mAmbient;
+        }
+
+        /**
+         * Returns the delay until the next frame: the next eye roll keyframe while the eyes are
+         * rolling (the next animation frame for the procedural face, which rolls smoothly),
+         * otherwise the time left until the next whole update interval of the render tier
+         * (second, or minute without a second hand).
+         */
+        private long nextFrameDelayMs() {
+            long uptimeMs = SystemClock.uptimeMillis();
+            KeyframeAnimation eyeRoll = mRenderer.getEyeRoll();
+            if (eyeRoll.isRunning(uptimeMs)) {
+                if (mRenderer.getFaceMode() == FaceRenderer.FACE_PROCEDURAL) {
+                    return ANIMATION_UPDATE_RATE_MS;
+                }
+                return Math.max(eyeRoll.delayToNextKeyframeMs(uptimeMs), ANIMATION_UPDATE_RATE_MS);
+            }
+            long timeMs = System.currentTimeMillis();
+            long intervalMs = mGovernor.getUpdateIntervalMs();
+            return intervalMs - (timeMs % intervalMs);
+        }
+
+        /**
+         * Handle updating the time periodically in interactive mode.
+         */
+        private void handleUpdateTimeMessage() {
+            mExpectedFrameNanos = mScheduledFrameNanos;
+            invalidate();
+            if (shouldTimerBeRunning()) {
+                long delayMs = nextFrameDelayMs();
+                if (EventTrace.ENABLED) {
+                    EventTrace.record(EventTrace.EVENT_TIMER, delayMs, 0);
+                }
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                mScheduledFrameNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            }
         }
 
     }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.t2labs.smileywatchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import org.t2labs.smileywatchface.render.AmbientFilters;
+
+/**
+ * Offscreen surface-sized layer holding everything that doesn't move between frames (background
+ * frame and counters). It is only re-composited after {@link #invalidate()}, and then only
+ * within the invalidated area; every other frame is a single blit of the layer with the hands
+ * drawn on top.
+ */
+class StaticLayer {
+
+    private Bitmap mBitmap;
+    private final Canvas mCanvas = new Canvas();
+    /* Area to re-composite, empty when the layer is up to date. */
+    private final Rect mDirty = new Rect();
+
+    /**
+     * Sizes the layer to the surface, keeping the current bitmap if neither the size nor the
+     * config changed. The layer is opaque, so RGB_565 does when the frames are flat artwork.
+     */
+    void setSize(int width, int height, Bitmap.Config config) {
+        if (mBitmap != null && mBitmap.getWidth() == width && mBitmap.getHeight() == height
+                && mBitmap.getConfig() == config) {
+            return;
+        }
+        release();
+        mBitmap = Bitmap.createBitmap(width, height, config);
+        mCanvas.setBitmap(mBitmap);
+        invalidate();
+    }
+
+    /** Marks the whole layer for re-compositing on the next frame. */
+    void invalidate() {
+        mDirty.set(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /** Marks {@code area} of the layer for re-compositing on the next frame. */
+    void invalidate(Rect area) {
+        mDirty.union(area);
+    }
+
+    boolean needsRebuild() {
+        return !mDirty.isEmpty() && mBitmap != null;
+    }
+
+    /** Adds the area waiting to be re-composited, within the layer, to {@code area}. */
+    void unionDirty(Rect area) {
+        if (needsRebuild()) {
+            int left = Math.max(mDirty.left, 0);
+            int top = Math.max(mDirty.top, 0);
+            area.union(left, top, Math.min(mDirty.right, mBitmap.getWidth()),
+                    Math.min(mDirty.bottom, mBitmap.getHeight()));
+        }
+    }
+
+    /**
+     * Returns the layer canvas, clipped to the invalidated area and cleared to black there, for
+     * re-compositing. Must be followed by {@link #endRebuild()}.
+     */
+    Canvas beginRebuild() {
+        mCanvas.save();
+        mCanvas.clipRect(mDirty);
+        mCanvas.drawColor(Color.BLACK);
+        return mCanvas;
+    }
+
+    void endRebuild() {
+        mCanvas.restore();
+        mDirty.setEmpty();
+    }
+
+    /** Blits the layer onto {@code canvas}; fills it black while the layer has no bitmap. */
+    void draw(Canvas canvas, Paint paint) {
+        if (mBitmap != null) {
+            canvas.drawBitmap(mBitmap, 0, 0, paint);
+        } else {
+            canvas.drawColor(Color.BLACK);
+        }
+    }
+
+    /**
+     * Counts the lit pixels of the layer a row at a time into {@code row}, which must hold a row
+     * of it; 0 while the layer has no bitmap.
+     */
+    int countLitPixels(int[] row) {
+        if (mBitmap == null) {
+            return 0;
+        }
+        int width = mBitmap.getWidth();
+        int lit = 0;
+        for (int y = 0; y < mBitmap.getHeight(); y++) {
+            mBitmap.getPixels(row, 0, width, 0, y, width, 1);
+            lit += AmbientFilters.countLit(row, 0, width);
+        }
+        return lit;
+    }
+
+    int getAllocationByteCount() {
+        return MemoryMode.bytesOf(mBitmap);
+    }
+
+    void release() {
+        mCanvas.setBitmap(null);
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        invalidate();
+    }
+}